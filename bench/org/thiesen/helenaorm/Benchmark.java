@@ -0,0 +1,129 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+
+/**
+ * A minimal benchmark harness. Each benchmark is warmed up, then run for a number of timed
+ * iterations on the calling thread. It reports the throughput of every iteration and the bytes
+ * the thread allocated per operation, where the JVM can measure it.
+ */
+abstract class Benchmark {
+
+    private static volatile int _sink;
+
+    private final String _name;
+
+    Benchmark( final String name ) {
+        _name = name;
+    }
+
+    String getName() {
+        return _name;
+    }
+
+    /**
+     * Performs a single operation. The result is consumed so the JIT can not remove the work.
+     */
+    abstract Object operation() throws Exception;
+
+    static final class Runner {
+
+        private final long _warmupMillis;
+        private final long _iterationMillis;
+        private final int _iterations;
+
+        Runner( final long warmupMillis, final long iterationMillis, final int iterations ) {
+            _warmupMillis = warmupMillis;
+            _iterationMillis = iterationMillis;
+            _iterations = iterations;
+        }
+
+        void run( final Benchmark benchmark ) throws Exception {
+            measure( benchmark, _warmupMillis );
+
+            double best = 0;
+            double total = 0;
+            final long allocatedBefore = allocatedBytes();
+            long operations = 0;
+            for ( int i = 0; i < _iterations; i++ ) {
+                final long[] result = measure( benchmark, _iterationMillis );
+                operations += result[0];
+                final double opsPerSecond = result[0] * 1e9 / result[1];
+                best = Math.max( best, opsPerSecond );
+                total += opsPerSecond;
+            }
+            final long allocated = allocatedBytes() - allocatedBefore;
+
+            System.out.println( String.format( Locale.ENGLISH, "%-40s %14.0f ops/s (best %14.0f) %12s B/op",
+                    benchmark.getName(), Double.valueOf( total / _iterations ), Double.valueOf( best ),
+                    allocatedBefore < 0 ? "n/a" : String.format( Locale.ENGLISH, "%.1f", Double.valueOf( (double) allocated / operations ) ) ) );
+        }
+
+        /**
+         * @return the number of operations and the nanoseconds they took
+         */
+        private static long[] measure( final Benchmark benchmark, final long millis ) throws Exception {
+            final long start = System.nanoTime();
+            final long deadline = start + millis * 1000000L;
+            long operations = 0;
+            long now;
+            int sink = 0;
+            do {
+                for ( int i = 0; i < 64; i++ ) {
+                    final Object result = benchmark.operation();
+                    sink += result == null ? 0 : System.identityHashCode( result );
+                }
+                operations += 64;
+                now = System.nanoTime();
+            } while ( now < deadline );
+            _sink += sink;
+            return new long[] { operations, now - start };
+        }
+
+        /**
+         * @return the bytes the current thread has allocated so far, or -1 if the JVM does not tell
+         */
+        private static long allocatedBytes() {
+            final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            if ( threads instanceof com.sun.management.ThreadMXBean ) {
+                final com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+                if ( hotspot.isThreadAllocatedMemorySupported() ) {
+                    if ( !hotspot.isThreadAllocatedMemoryEnabled() ) {
+                        hotspot.setThreadAllocatedMemoryEnabled( true );
+                    }
+                    return hotspot.getThreadAllocatedBytes( Thread.currentThread().getId() );
+                }
+            }
+            return -1;
+        }
+
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import me.prettyprint.cassandra.dao.Command;
+
+import org.apache.cassandra.thrift.ConsistencyLevel;
+
+/**
+ * Runs every command against an {@link InMemoryKeyspace} instead of a Cassandra connection.
+ */
+class InMemoryClientPool extends HelenaClientPool {
+
+    private final Map<String, InMemoryKeyspace> _keyspaces = new HashMap<String, InMemoryKeyspace>();
+
+    InMemoryClientPool() {
+        super( null, new String[0] );
+    }
+
+    synchronized InMemoryKeyspace getKeyspace( final String keyspace ) {
+        InMemoryKeyspace result = _keyspaces.get( keyspace );
+        if ( result == null ) {
+            result = new InMemoryKeyspace( keyspace );
+            _keyspaces.put( keyspace, result );
+        }
+        return result;
+    }
+
+    @Override
+    <V> V execute( final Command<V> command, final String keyspace, final ConsistencyLevel consistencyLevel ) throws Exception {
+        return command.execute( getKeyspace( keyspace ) );
+    }
+
+    @Override
+    public String toString() {
+        return "InMemoryClientPool " + _keyspaces.keySet();
+    }
+
+}
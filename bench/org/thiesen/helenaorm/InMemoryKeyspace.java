@@ -0,0 +1,501 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm;
+
+import java.lang.reflect.Field;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import me.prettyprint.cassandra.model.HectorException;
+import me.prettyprint.cassandra.service.BatchMutation;
+import me.prettyprint.cassandra.service.CassandraClient;
+import me.prettyprint.cassandra.service.CassandraClient.FailoverPolicy;
+import me.prettyprint.cassandra.service.Keyspace;
+
+import org.apache.cassandra.thrift.Column;
+import org.apache.cassandra.thrift.ColumnParent;
+import org.apache.cassandra.thrift.ColumnPath;
+import org.apache.cassandra.thrift.ConsistencyLevel;
+import org.apache.cassandra.thrift.Deletion;
+import org.apache.cassandra.thrift.KeyRange;
+import org.apache.cassandra.thrift.Mutation;
+import org.apache.cassandra.thrift.SlicePredicate;
+import org.apache.cassandra.thrift.SliceRange;
+import org.apache.cassandra.thrift.SuperColumn;
+
+import com.google.common.collect.Iterables;
+
+/**
+ * A keyspace that keeps its rows in memory, so benchmarks measure the DAOs instead of the network.
+ * It supports the single row, multiget, range slice and mutation calls the DAOs use, of two writes
+ * to the same column the one with the higher timestamp wins. Range slices return the rows in the
+ * token order of the RandomPartitioner.
+ */
+class InMemoryKeyspace implements Keyspace {
+
+    private static final Comparator<byte[]> BYTES_ORDER = new Comparator<byte[]>() {
+        @Override
+        public int compare( final byte[] left, final byte[] right ) {
+            final int length = Math.min( left.length, right.length );
+            for ( int i = 0; i < length; i++ ) {
+                final int difference = ( left[i] & 0xFF ) - ( right[i] & 0xFF );
+                if ( difference != 0 ) {
+                    return difference;
+                }
+            }
+            return left.length - right.length;
+        }
+    };
+
+    private final String _name;
+    private final Map<String, Map<String, NavigableMap<byte[], Column>>> _rows = new HashMap<String, Map<String, NavigableMap<byte[], Column>>>();
+    private final Map<String, Map<String, NavigableMap<byte[], NavigableMap<byte[], Column>>>> _superRows =
+        new HashMap<String, Map<String, NavigableMap<byte[], NavigableMap<byte[], Column>>>>();
+    private final Map<String, BigInteger> _tokens = new HashMap<String, BigInteger>();
+
+    InMemoryKeyspace( final String name ) {
+        _name = name;
+    }
+
+    private NavigableMap<byte[], Column> row( final String columnFamily, final String key, final boolean create ) {
+        Map<String, NavigableMap<byte[], Column>> family = _rows.get( columnFamily );
+        if ( family == null ) {
+            if ( !create ) {
+                return null;
+            }
+            family = new HashMap<String, NavigableMap<byte[], Column>>();
+            _rows.put( columnFamily, family );
+        }
+        NavigableMap<byte[], Column> row = family.get( key );
+        if ( row == null && create ) {
+            row = new TreeMap<byte[], Column>( BYTES_ORDER );
+            family.put( key, row );
+        }
+        return row;
+    }
+
+    private NavigableMap<byte[], NavigableMap<byte[], Column>> superRow( final String columnFamily, final String key, final boolean create ) {
+        Map<String, NavigableMap<byte[], NavigableMap<byte[], Column>>> family = _superRows.get( columnFamily );
+        if ( family == null ) {
+            if ( !create ) {
+                return null;
+            }
+            family = new HashMap<String, NavigableMap<byte[], NavigableMap<byte[], Column>>>();
+            _superRows.put( columnFamily, family );
+        }
+        NavigableMap<byte[], NavigableMap<byte[], Column>> row = family.get( key );
+        if ( row == null && create ) {
+            row = new TreeMap<byte[], NavigableMap<byte[], Column>>( BYTES_ORDER );
+            family.put( key, row );
+        }
+        return row;
+    }
+
+    private NavigableMap<byte[], Column> columns( final String columnFamily, final byte[] superColumn, final String key, final boolean create ) {
+        if ( superColumn == null ) {
+            return row( columnFamily, key, create );
+        }
+        final NavigableMap<byte[], NavigableMap<byte[], Column>> row = superRow( columnFamily, key, create );
+        if ( row == null ) {
+            return null;
+        }
+        NavigableMap<byte[], Column> columns = row.get( superColumn );
+        if ( columns == null && create ) {
+            columns = new TreeMap<byte[], Column>( BYTES_ORDER );
+            row.put( superColumn, columns );
+        }
+        return columns;
+    }
+
+    private static void put( final NavigableMap<byte[], Column> columns, final Column column ) {
+        final Column existing = columns.get( column.getName() );
+        if ( existing == null || existing.getTimestamp() <= column.getTimestamp() ) {
+            columns.put( column.getName(), new Column( column.getName(), column.getValue(), column.getTimestamp() ) );
+        }
+    }
+
+    private static <V> List<V> select( final NavigableMap<byte[], V> map, final SlicePredicate predicate ) {
+        final List<V> result = new ArrayList<V>();
+        if ( map == null ) {
+            return result;
+        }
+        if ( predicate.isSetColumn_names() ) {
+            for ( final byte[] name : predicate.getColumn_names() ) {
+                final V value = map.get( name );
+                if ( value != null ) {
+                    result.add( value );
+                }
+            }
+            return result;
+        }
+        final SliceRange range = predicate.getSlice_range();
+        NavigableMap<byte[], V> view = range.isReversed() ? map.descendingMap() : map;
+        if ( range.getStart().length > 0 ) {
+            view = view.tailMap( range.getStart(), true );
+        }
+        if ( range.getFinish().length > 0 ) {
+            view = view.headMap( range.getFinish(), true );
+        }
+        for ( final V value : view.values() ) {
+            if ( result.size() >= range.getCount() ) {
+                break;
+            }
+            result.add( value );
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized List<Column> getSlice( final String key, final ColumnParent columnParent, final SlicePredicate predicate ) {
+        return select( columns( columnParent.getColumn_family(), columnParent.getSuper_column(), key, false ), predicate );
+    }
+
+    @Override
+    public synchronized List<SuperColumn> getSuperSlice( final String key, final ColumnParent columnParent, final SlicePredicate predicate ) {
+        final List<SuperColumn> result = new ArrayList<SuperColumn>();
+        final NavigableMap<byte[], NavigableMap<byte[], Column>> row = superRow( columnParent.getColumn_family(), key, false );
+        if ( row == null ) {
+            return result;
+        }
+        final NavigableMap<byte[], byte[]> names = new TreeMap<byte[], byte[]>( BYTES_ORDER );
+        for ( final byte[] name : row.keySet() ) {
+            names.put( name, name );
+        }
+        for ( final byte[] name : select( names, predicate ) ) {
+            result.add( new SuperColumn( name, new ArrayList<Column>( row.get( name ).values() ) ) );
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized Map<String, List<Column>> multigetSlice( final List<String> keys, final ColumnParent columnParent, final SlicePredicate predicate ) {
+        final Map<String, List<Column>> result = new LinkedHashMap<String, List<Column>>();
+        for ( final String key : keys ) {
+            result.put( key, getSlice( key, columnParent, predicate ) );
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized Map<String, List<SuperColumn>> multigetSuperSlice( final List<String> keys, final ColumnParent columnParent, final SlicePredicate predicate ) {
+        final Map<String, List<SuperColumn>> result = new LinkedHashMap<String, List<SuperColumn>>();
+        for ( final String key : keys ) {
+            result.put( key, getSuperSlice( key, columnParent, predicate ) );
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized Column getColumn( final String key, final ColumnPath columnPath ) {
+        final NavigableMap<byte[], Column> columns = columns( columnPath.getColumn_family(), columnPath.getSuper_column(), key, false );
+        final Column column = columns == null ? null : columns.get( columnPath.getColumn() );
+        if ( column == null ) {
+            throw new HectorException( "Column not found" );
+        }
+        return column;
+    }
+
+    @Override
+    public void insert( final String key, final ColumnPath columnPath, final byte[] value ) {
+        insert( key, columnPath, value, createTimestamp() );
+    }
+
+    @Override
+    public synchronized void insert( final String key, final ColumnPath columnPath, final byte[] value, final long timestamp ) {
+        put( columns( columnPath.getColumn_family(), columnPath.getSuper_column(), key, true ),
+                new Column( columnPath.getColumn(), value, timestamp ) );
+    }
+
+    @Override
+    public synchronized void batchInsert( final String key, final Map<String, List<Column>> columnMap,
+            final Map<String, List<SuperColumn>> superColumnMap ) {
+        if ( columnMap != null ) {
+            for ( final Map.Entry<String, List<Column>> family : columnMap.entrySet() ) {
+                for ( final Column column : family.getValue() ) {
+                    put( row( family.getKey(), key, true ), column );
+                }
+            }
+        }
+        if ( superColumnMap != null ) {
+            for ( final Map.Entry<String, List<SuperColumn>> family : superColumnMap.entrySet() ) {
+                for ( final SuperColumn superColumn : family.getValue() ) {
+                    insertSuperColumn( family.getKey(), key, superColumn );
+                }
+            }
+        }
+    }
+
+    private void insertSuperColumn( final String columnFamily, final String key, final SuperColumn superColumn ) {
+        final NavigableMap<byte[], Column> columns = columns( columnFamily, superColumn.getName(), key, true );
+        for ( final Column column : superColumn.getColumns() ) {
+            put( columns, column );
+        }
+    }
+
+    @Override
+    public synchronized void batchMutate( final Map<String, Map<String, List<Mutation>>> mutationMap ) {
+        for ( final Map<String, List<Mutation>> row : mutationMap.values() ) {
+            for ( final List<Mutation> mutations : row.values() ) {
+                for ( final Mutation mutation : mutations ) {
+                    validate( mutation );
+                }
+            }
+        }
+        for ( final Map.Entry<String, Map<String, List<Mutation>>> row : mutationMap.entrySet() ) {
+            for ( final Map.Entry<String, List<Mutation>> family : row.getValue().entrySet() ) {
+                for ( final Mutation mutation : family.getValue() ) {
+                    apply( row.getKey(), family.getKey(), mutation );
+                }
+            }
+        }
+    }
+
+    /**
+     * Rejects the deletions Cassandra 0.6 rejects, which fails the whole batch before anything is applied.
+     */
+    private static void validate( final Mutation mutation ) {
+        if ( !mutation.isSetDeletion() ) {
+            return;
+        }
+        final Deletion deletion = mutation.getDeletion();
+        if ( !deletion.isSetSuper_column() && !deletion.isSetPredicate() ) {
+            throw new HectorException( "A Deletion must have a SuperColumn, a SlicePredicate or both." );
+        }
+        if ( deletion.isSetPredicate() && deletion.getPredicate().isSetSlice_range() ) {
+            throw new HectorException( "Deletion does not yet support SliceRange predicates." );
+        }
+    }
+
+    private void apply( final String key, final String columnFamily, final Mutation mutation ) {
+        if ( mutation.isSetColumn_or_supercolumn() ) {
+            if ( mutation.getColumn_or_supercolumn().isSetSuper_column() ) {
+                insertSuperColumn( columnFamily, key, mutation.getColumn_or_supercolumn().getSuper_column() );
+            } else {
+                put( row( columnFamily, key, true ), mutation.getColumn_or_supercolumn().getColumn() );
+            }
+        }
+        if ( mutation.isSetDeletion() ) {
+            final Deletion deletion = mutation.getDeletion();
+            final NavigableMap<byte[], Column> columns = columns( columnFamily, deletion.getSuper_column(), key, false );
+            if ( columns != null && deletion.isSetPredicate() && deletion.getPredicate().isSetColumn_names() ) {
+                for ( final byte[] name : deletion.getPredicate().getColumn_names() ) {
+                    columns.remove( name );
+                }
+            } else if ( columns != null ) {
+                columns.clear();
+            }
+        }
+    }
+
+    /**
+     * Hector keeps the mutations of a BatchMutation to itself, they are read the way its client does.
+     */
+    @Override
+    public void batchMutate( final BatchMutation batchMutation ) {
+        try {
+            final Field field = BatchMutation.class.getDeclaredField( "mutationMap" );
+            field.setAccessible( true );
+            @SuppressWarnings( "unchecked" )
+            final Map<String, Map<String, List<Mutation>>> mutationMap = (Map<String, Map<String, List<Mutation>>>) field.get( batchMutation );
+            batchMutate( mutationMap );
+        } catch ( final NoSuchFieldException e ) {
+            throw new IllegalStateException( e );
+        } catch ( final IllegalAccessException e ) {
+            throw new IllegalStateException( e );
+        }
+    }
+
+    @Override
+    public void remove( final String key, final ColumnPath columnPath ) {
+        remove( key, columnPath, createTimestamp() );
+    }
+
+    @Override
+    public synchronized void remove( final String key, final ColumnPath columnPath, final long timestamp ) {
+        final String columnFamily = columnPath.getColumn_family();
+        if ( columnPath.isSetColumn() ) {
+            final NavigableMap<byte[], Column> columns = columns( columnFamily, columnPath.getSuper_column(), key, false );
+            if ( columns != null ) {
+                columns.remove( columnPath.getColumn() );
+            }
+        } else if ( columnPath.isSetSuper_column() ) {
+            final NavigableMap<byte[], NavigableMap<byte[], Column>> row = superRow( columnFamily, key, false );
+            if ( row != null ) {
+                row.remove( columnPath.getSuper_column() );
+            }
+        } else {
+            if ( _rows.containsKey( columnFamily ) ) {
+                _rows.get( columnFamily ).remove( key );
+            }
+            if ( _superRows.containsKey( columnFamily ) ) {
+                _superRows.get( columnFamily ).remove( key );
+            }
+        }
+    }
+
+    @Override
+    public synchronized int getCount( final String key, final ColumnParent columnParent ) {
+        final NavigableMap<byte[], Column> columns = columns( columnParent.getColumn_family(), columnParent.getSuper_column(), key, false );
+        if ( columns != null ) {
+            return columns.size();
+        }
+        final NavigableMap<byte[], NavigableMap<byte[], Column>> row = superRow( columnParent.getColumn_family(), key, false );
+        return row == null ? 0 : row.size();
+    }
+
+    @Override
+    public SuperColumn getSuperColumn( final String key, final ColumnPath columnPath ) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public SuperColumn getSuperColumn( final String key, final ColumnPath columnPath, final boolean reversed, final int size ) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Map<String, Column> multigetColumn( final List<String> keys, final ColumnPath columnPath ) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Map<String, SuperColumn> multigetSuperColumn( final List<String> keys, final ColumnPath columnPath ) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Map<String, SuperColumn> multigetSuperColumn( final List<String> keys, final ColumnPath columnPath,
+            final boolean reversed, final int size ) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    @Deprecated
+    public Map<String, List<Column>> getRangeSlice( final ColumnParent columnParent, final SlicePredicate predicate,
+            final String start, final String finish, final int count ) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * A start token is exclusive, a start key inclusive and the end always inclusive. A token range
+     * whose start is not before its end wraps around the ring, an empty end key reads to its end.
+     */
+    @Override
+    public synchronized LinkedHashMap<String, List<Column>> getRangeSlices( final ColumnParent columnParent, final SlicePredicate predicate,
+            final KeyRange keyRange ) {
+        final NavigableMap<BigInteger, String> ring = new TreeMap<BigInteger, String>();
+        final Map<String, NavigableMap<byte[], Column>> family = _rows.get( columnParent.getColumn_family() );
+        if ( family != null ) {
+            for ( final String key : family.keySet() ) {
+                ring.put( tokenOf( key ), key );
+            }
+        }
+        final boolean byToken = keyRange.isSetStart_token();
+        final BigInteger start = byToken ? new BigInteger( keyRange.getStart_token() ) : tokenOf( keyRange.getStart_key() );
+        final BigInteger end = keyRange.isSetEnd_token() ? new BigInteger( keyRange.getEnd_token() ) : tokenOf( keyRange.getEnd_key() );
+
+        final Iterable<String> keys;
+        if ( byToken && start.compareTo( end ) >= 0 ) {
+            keys = Iterables.concat( ring.tailMap( start, false ).values(), ring.headMap( end, true ).values() );
+        } else if ( end.signum() == 0 ) {
+            keys = ring.tailMap( start, !byToken ).values();
+        } else {
+            keys = ring.subMap( start, !byToken, end, true ).values();
+        }
+
+        final LinkedHashMap<String, List<Column>> result = new LinkedHashMap<String, List<Column>>();
+        for ( final String key : keys ) {
+            if ( result.size() >= keyRange.getCount() ) {
+                break;
+            }
+            result.put( key, select( family.get( key ), predicate ) );
+        }
+        return result;
+    }
+
+    private BigInteger tokenOf( final String key ) {
+        if ( key == null || key.length() == 0 ) {
+            return BigInteger.ZERO;
+        }
+        BigInteger token = _tokens.get( key );
+        if ( token == null ) {
+            token = TokenRanges.tokenValueOf( key );
+            _tokens.put( key, token );
+        }
+        return token;
+    }
+
+    @Override
+    @Deprecated
+    public Map<String, List<SuperColumn>> getSuperRangeSlice( final ColumnParent columnParent, final SlicePredicate predicate,
+            final String start, final String finish, final int count ) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public LinkedHashMap<String, List<SuperColumn>> getSuperRangeSlices( final ColumnParent columnParent,
+            final SlicePredicate predicate, final KeyRange keyRange ) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Map<String, Map<String, String>> describeKeyspace() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public CassandraClient getClient() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ConsistencyLevel getConsistencyLevel() {
+        return ConsistencyLevel.ONE;
+    }
+
+    @Override
+    public String getName() {
+        return _name;
+    }
+
+    @Override
+    public FailoverPolicy getFailoverPolicy() {
+        return FailoverPolicy.FAIL_FAST;
+    }
+
+    @Override
+    public long createTimestamp() {
+        return System.currentTimeMillis() * 1000;
+    }
+
+}
@@ -0,0 +1,290 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm;
+
+import java.net.URI;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.cassandra.thrift.Column;
+import org.thiesen.helenaorm.example.Attendance;
+import org.thiesen.helenaorm.example.EventType;
+import org.thiesen.helenaorm.example.PublicEvent;
+import org.thiesen.helenaorm.example.User;
+import org.thiesen.helenaorm.example.UserType;
+import org.thiesen.helenaorm.mappings.BinaryTypeMappings;
+import org.thiesen.helenaorm.mappings.IntegerTypeMapping;
+import org.thiesen.helenaorm.mappings.LongTypeMapping;
+import org.thiesen.helenaorm.mappings.StringTypeMapping;
+import org.thiesen.helenaorm.mappings.URITypeMapping;
+import org.thiesen.helenaorm.mappings.UUIDTypeMapping;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+/**
+ * Measures marshalling and unmarshalling of the example beans, the type converter and the type
+ * mappings against an in-memory keyspace. Run it with <code>ant benchmark</code>, optionally with
+ * <code>-Dbenchmark.filter=...</code> to run only the benchmarks whose name contains the text.
+ */
+public final class MarshallingBenchmarks {
+
+    private MarshallingBenchmarks() {
+        // main only
+    }
+
+    public static void main( final String[] args ) throws Exception {
+        final String filter = args.length > 0 ? args[0] : "";
+        final Benchmark.Runner runner = new Benchmark.Runner(
+                Long.getLong( "benchmark.warmup", 2000 ).longValue(),
+                Long.getLong( "benchmark.time", 1000 ).longValue(),
+                Integer.getInteger( "benchmark.iterations", 5 ).intValue() );
+
+        for ( final Benchmark benchmark : benchmarks() ) {
+            if ( benchmark.getName().contains( filter ) ) {
+                runner.run( benchmark );
+            }
+        }
+    }
+
+    private static List<Benchmark> benchmarks() {
+        final List<Benchmark> benchmarks = Lists.newArrayList();
+        final HelenaORMDAOFactory factory = HelenaORMDAOFactory.withClientPool( new InMemoryClientPool(),
+                SerializeUnknownClasses.YES, ImmutableMap.<Class<?>, TypeMapping<?>>of() );
+
+        addPublicEventBenchmarks( benchmarks, factory.makeDaoForClass( PublicEvent.class ) );
+        addUserBenchmarks( benchmarks, factory.makeDaoForClass( User.class ) );
+        addAttendanceBenchmarks( benchmarks, factory.makeColumnDaoForClass( Attendance.class ) );
+
+        final HelenaORMDAOFactory binaryFactory = HelenaORMDAOFactory.withClientPool( new InMemoryClientPool(),
+                SerializeUnknownClasses.YES, BinaryTypeMappings.exact() );
+        addMeasurementBenchmarks( benchmarks, "Measurement", binaryFactory.makeDaoForClass( Measurement.class ), new Measurement() );
+        addMeasurementBenchmarks( benchmarks, "FieldMeasurement", binaryFactory.makeDaoForClass( FieldMeasurement.class ),
+                new FieldMeasurement() );
+
+        final TypeConverter converter = new TypeConverter( ImmutableMap.<Class<?>, TypeMapping<?>>of(
+                String.class, new StringTypeMapping(),
+                UUID.class, new UUIDTypeMapping(),
+                Long.class, new LongTypeMapping(),
+                URI.class, new URITypeMapping() ), SerializeUnknownClasses.YES );
+        addConverterBenchmarks( benchmarks, converter, "uuid", UUID.randomUUID() );
+        addConverterBenchmarks( benchmarks, converter, "long", Long.valueOf( 1234567890123L ) );
+        addConverterBenchmarks( benchmarks, converter, "string", "The quick brown fox" );
+        addConverterBenchmarks( benchmarks, converter, "uri", URI.create( "http://example.com/events/1" ) );
+        addConverterBenchmarks( benchmarks, converter, "enum", EventType.CONCERT );
+
+        addMappingBenchmarks( benchmarks, new StringTypeMapping(), "The quick brown fox" );
+        addMappingBenchmarks( benchmarks, new UUIDTypeMapping(), UUID.randomUUID() );
+        addMappingBenchmarks( benchmarks, new LongTypeMapping(), Long.valueOf( 1234567890123L ) );
+        addMappingBenchmarks( benchmarks, new IntegerTypeMapping(), Integer.valueOf( 123456 ) );
+        addMappingBenchmarks( benchmarks, new URITypeMapping(), URI.create( "http://example.com/events/1" ) );
+        for ( final Map.Entry<Class<?>, TypeMapping<?>> mapping : BinaryTypeMappings.exact().entrySet() ) {
+            addMappingBenchmarks( benchmarks, mapping.getValue(), sampleOf( mapping.getKey() ) );
+        }
+        return benchmarks;
+    }
+
+    private static void addPublicEventBenchmarks( final List<Benchmark> benchmarks, final HelenaDAO<PublicEvent> dao ) {
+        final PublicEvent event = new PublicEvent();
+        event.setId( UUID.randomUUID() );
+        event.setName( "Release party" );
+        event.setDescription( "Celebrating the next release" );
+        event.setMoreDescription( "With music and drinks until late" );
+        event.setUrl( URI.create( "http://example.com/events/release-party" ) );
+        event.setType( EventType.PARTY );
+        dao.insert( event );
+
+        final String key = event.getId().toString();
+        final List<Column> slice = ImmutableList.copyOf( dao.toColumns( dao.marshal( event ), 0 ) );
+
+        benchmarks.add( new Benchmark( "PublicEvent marshal" ) {
+            @Override
+            Object operation() {
+                return dao.marshal( event );
+            }
+        } );
+        final MarshalledObject buffer = dao.newMarshalledObject();
+        benchmarks.add( new Benchmark( "PublicEvent marshal into buffer" ) {
+            @Override
+            Object operation() {
+                return dao.toColumns( dao.marshal( event, buffer ), 0 );
+            }
+        } );
+        benchmarks.add( new Benchmark( "PublicEvent applyColumns" ) {
+            @Override
+            Object operation() {
+                return dao.applyColumns( key, slice, false );
+            }
+        } );
+        benchmarks.add( new Benchmark( "PublicEvent insert" ) {
+            @Override
+            Object operation() {
+                dao.insert( event );
+                return null;
+            }
+        } );
+        benchmarks.add( new Benchmark( "PublicEvent get" ) {
+            @Override
+            Object operation() {
+                return dao.get( key );
+            }
+        } );
+    }
+
+    private static void addUserBenchmarks( final List<Benchmark> benchmarks, final HelenaDAO<User> dao ) {
+        final User user = new User();
+        user.setType( UserType.ADMINISTRATOR );
+        user.setUsername( "admin" );
+        user.setFirstname( "Ada" );
+        user.setLastname( "Lovelace" );
+        dao.insert( user );
+
+        final String key = UserType.ADMINISTRATOR.name();
+        final List<String> usernames = ImmutableList.of( "admin" );
+
+        benchmarks.add( new Benchmark( "User insert" ) {
+            @Override
+            Object operation() {
+                dao.insert( user );
+                return null;
+            }
+        } );
+        benchmarks.add( new Benchmark( "User get super column" ) {
+            @Override
+            Object operation() {
+                return dao.get( key, usernames );
+            }
+        } );
+    }
+
+    private static void addAttendanceBenchmarks( final List<Benchmark> benchmarks, final HelenaColumnDAO<Attendance> dao ) {
+        final Attendance attendance = new Attendance();
+        attendance.setUser( "ada" );
+        attendance.setEvent( "release-party" );
+        attendance.setTime( Long.valueOf( 1277000000000L ) );
+        dao.insert( attendance );
+
+        benchmarks.add( new Benchmark( "Attendance insert" ) {
+            @Override
+            Object operation() {
+                dao.insert( attendance );
+                return null;
+            }
+        } );
+        benchmarks.add( new Benchmark( "Attendance getEntries" ) {
+            @Override
+            Object operation() {
+                return dao.getEntries( "ada" );
+            }
+        } );
+    }
+
+    private static <T extends Measurement> void addMeasurementBenchmarks( final List<Benchmark> benchmarks,
+            final String name, final HelenaDAO<T> dao, final T measurement ) {
+        measurement.setId( "sensor-1" );
+        measurement.setTime( 1277000000000L );
+        measurement.setCount( 42 );
+        measurement.setValue( Math.PI );
+        measurement.setError( 0.25f );
+        measurement.setValid( true );
+        dao.insert( measurement );
+
+        final MarshalledObject buffer = dao.newMarshalledObject();
+        final List<Column> slice = ImmutableList.copyOf( dao.toColumns( dao.marshal( measurement ), 0 ) );
+
+        benchmarks.add( new Benchmark( name + " marshal into buffer" ) {
+            @Override
+            Object operation() {
+                return dao.marshal( measurement, buffer );
+            }
+        } );
+        benchmarks.add( new Benchmark( name + " applyColumns" ) {
+            @Override
+            Object operation() {
+                return dao.applyColumns( "sensor-1", slice, false );
+            }
+        } );
+    }
+
+    private static void addConverterBenchmarks( final List<Benchmark> benchmarks, final TypeConverter converter,
+            final String name, final Object value ) {
+        final byte[] bytes = converter.convertValueObjectToByteArray( value );
+        final Class<?> type = value.getClass();
+        benchmarks.add( new Benchmark( "TypeConverter encode " + name ) {
+            @Override
+            Object operation() {
+                return converter.convertValueObjectToByteArray( value );
+            }
+        } );
+        benchmarks.add( new Benchmark( "TypeConverter decode " + name ) {
+            @Override
+            Object operation() {
+                return converter.convertByteArrayToValueObject( type, bytes );
+            }
+        } );
+    }
+
+    private static void addMappingBenchmarks( final List<Benchmark> benchmarks, final TypeMapping<?> mapping,
+            final Object value ) {
+        final String name = mapping.getClass().getSimpleName();
+        final byte[] bytes = mapping.toBytes( value );
+        benchmarks.add( new Benchmark( name + " toBytes" ) {
+            @Override
+            Object operation() {
+                return mapping.toBytes( value );
+            }
+        } );
+        benchmarks.add( new Benchmark( name + " fromBytes" ) {
+            @Override
+            Object operation() {
+                return mapping.fromBytes( bytes );
+            }
+        } );
+    }
+
+    private static Object sampleOf( final Class<?> type ) {
+        if ( type == Long.class ) {
+            return Long.valueOf( 1234567890123L );
+        } else if ( type == Integer.class ) {
+            return Integer.valueOf( 123456 );
+        } else if ( type == UUID.class ) {
+            return UUID.randomUUID();
+        } else if ( type == Double.class ) {
+            return Double.valueOf( Math.PI );
+        } else if ( type == Float.class ) {
+            return Float.valueOf( 2.5f );
+        } else if ( type == Boolean.class ) {
+            return Boolean.TRUE;
+        } else if ( type == Date.class ) {
+            return new Date( 1277000000000L );
+        }
+        throw new IllegalArgumentException( "No sample for " + type );
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm;
+
+import org.thiesen.helenaorm.annotations.HelenaBean;
+import org.thiesen.helenaorm.annotations.KeyProperty;
+
+/**
+ * A bean with primitive properties, mapped through its getters and setters.
+ */
+@HelenaBean( keyspace="Keyspace1", columnFamily="Measurements")
+public class Measurement {
+
+    private String _id;
+    private long _time;
+    private int _count;
+    private double _value;
+    private float _error;
+    private boolean _valid;
+
+    @KeyProperty
+    public String getId() {
+        return _id;
+    }
+    public void setId( final String id ) {
+        _id = id;
+    }
+    public long getTime() {
+        return _time;
+    }
+    public void setTime( final long time ) {
+        _time = time;
+    }
+    public int getCount() {
+        return _count;
+    }
+    public void setCount( final int count ) {
+        _count = count;
+    }
+    public double getValue() {
+        return _value;
+    }
+    public void setValue( final double value ) {
+        _value = value;
+    }
+    public float getError() {
+        return _error;
+    }
+    public void setError( final float error ) {
+        _error = error;
+    }
+    public boolean isValid() {
+        return _valid;
+    }
+    public void setValid( final boolean valid ) {
+        _valid = valid;
+    }
+
+}
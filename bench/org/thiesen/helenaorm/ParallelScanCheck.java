@@ -0,0 +1,197 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.cassandra.thrift.Column;
+import org.thiesen.helenaorm.mappings.BinaryTypeMappings;
+
+import com.google.common.base.Function;
+import com.google.common.collect.Lists;
+
+/**
+ * Checks that scans against an {@link InMemoryKeyspace} deliver every row exactly once, for page
+ * sizes around the number of rows and token ring segments that end on a row or wrap around the ring.
+ * Throws an IllegalStateException on the first row that went missing or was delivered twice.
+ */
+public final class ParallelScanCheck {
+
+    private static final int ROWS = 1000;
+
+    private static final int[] PAGE_SIZES = { 1, 2, 3, 7, 100, ROWS - 1, ROWS, ROWS + 1 };
+
+    private static final int[] PARALLELISMS = { 1, 2, 3, 8 };
+
+    private ParallelScanCheck() {
+        // main only
+    }
+
+    public static void main( final String[] args ) {
+        final HelenaDAO<Measurement> dao = HelenaORMDAOFactory.withClientPool( new InMemoryClientPool(),
+                SerializeUnknownClasses.YES, BinaryTypeMappings.exact() ).makeDaoForClass( Measurement.class );
+        final Set<String> ids = new HashSet<String>();
+        final NavigableMap<BigInteger, String> ring = new TreeMap<BigInteger, String>();
+        for ( int i = 0; i < ROWS; i++ ) {
+            final Measurement measurement = new Measurement();
+            measurement.setId( "row-" + i );
+            measurement.setTime( i );
+            dao.insert( measurement );
+            ids.add( measurement.getId() );
+            ring.put( TokenRanges.tokenValueOf( measurement.getId() ), measurement.getId() );
+        }
+        final List<BigInteger> tokens = new ArrayList<BigInteger>( ring.keySet() );
+
+        int checks = 0;
+        for ( final int pageSize : PAGE_SIZES ) {
+            checkPages( ring.values(), pageSize );
+            checkExactlyOnce( "scan with page size " + pageSize, ids, scan( dao, pageSize ) );
+            for ( final int parallelism : PARALLELISMS ) {
+                checkExactlyOnce( "parallel scan with parallelism " + parallelism + " and page size " + pageSize, ids,
+                        parallelScan( dao, null, parallelism, pageSize ) );
+            }
+            for ( final int step : new int[] { 1, 10, ROWS / 3 } ) {
+                checkExactlyOnce( "parallel scan of segments ending on every " + step + ". row and page size " + pageSize, ids,
+                        parallelScan( dao, segmentsEndingOnRows( tokens, step ), 4, pageSize ) );
+            }
+            checks += 2 + PARALLELISMS.length + 3;
+        }
+        System.out.println( checks + " scans delivered each of the " + ROWS + " rows exactly once" );
+    }
+
+    private static List<String> scan( final HelenaDAO<Measurement> dao, final int pageSize ) {
+        final List<String> delivered = new ArrayList<String>();
+        for ( final Measurement measurement : dao.scan( "", "", pageSize ) ) {
+            delivered.add( measurement.getId() );
+        }
+        return delivered;
+    }
+
+    private static List<String> parallelScan( final HelenaDAO<Measurement> dao, final List<TokenRanges.Segment> segments,
+            final int parallelism, final int pageSize ) {
+        final List<String> delivered = Collections.synchronizedList( new ArrayList<String>() );
+        final Set<String> seen = Collections.synchronizedSet( new HashSet<String>() );
+        final RowCallback<Measurement> callback = new RowCallback<Measurement>() {
+            @Override
+            public void process( final Measurement row ) {
+                // a segment that reads past its end keeps going around the ring, stop at the first repeat
+                if ( !seen.add( row.getId() ) ) {
+                    throw new IllegalStateException( "Parallel scan delivered " + row.getId() + " twice" );
+                }
+                delivered.add( row.getId() );
+            }
+        };
+        if ( segments == null ) {
+            dao.parallelScan( parallelism, pageSize, callback );
+        } else {
+            dao.parallelScan( segments, parallelism, pageSize, null, callback );
+        }
+        return delivered;
+    }
+
+    /**
+     * Segments from the token of every step-th row to the next one, the last one wraps around the
+     * ring to the first. Starts at the third row so the wrapping segment holds rows on both ends.
+     */
+    private static List<TokenRanges.Segment> segmentsEndingOnRows( final List<BigInteger> tokens, final int step ) {
+        final List<String> bounds = new ArrayList<String>();
+        for ( int i = 2; i < tokens.size(); i += step ) {
+            bounds.add( tokens.get( i ).toString() );
+        }
+        final List<TokenRanges.Segment> segments = new ArrayList<TokenRanges.Segment>();
+        for ( int i = 0; i < bounds.size(); i++ ) {
+            segments.add( new TokenRanges.Segment( bounds.get( i ), bounds.get( ( i + 1 ) % bounds.size() ) ) );
+        }
+        return segments;
+    }
+
+    /**
+     * Pages through the keys in order the way Cassandra does for a start key, so every page after
+     * the first repeats the last key of the previous one, and checks the requests of the iterator.
+     */
+    private static void checkPages( final Iterable<String> keys, final int pageSize ) {
+        final List<String> ordered = Lists.newArrayList( keys );
+        final List<String> requests = new ArrayList<String>();
+        final RangeScanIterator.PageSource source = new RangeScanIterator.PageSource() {
+            private String _lastKey;
+
+            @Override
+            public Map<String, List<Column>> fetch( final String startKey, final int count ) {
+                final int expected = _lastKey == null ? pageSize : pageSize + 1;
+                if ( count != expected || ( _lastKey != null && !_lastKey.equals( startKey ) ) ) {
+                    throw new IllegalStateException( "Requested " + count + " rows from " + startKey + " after page ending with "
+                            + _lastKey + ", expected " + expected );
+                }
+                requests.add( startKey );
+                final Map<String, List<Column>> page = new LinkedHashMap<String, List<Column>>();
+                final int from = startKey == null ? 0 : ordered.indexOf( startKey );
+                for ( final String key : ordered.subList( from, Math.min( from + count, ordered.size() ) ) ) {
+                    page.put( key, Collections.singletonList( new Column( new byte[] { 1 }, new byte[] { 1 }, 0 ) ) );
+                    _lastKey = key;
+                }
+                return page;
+            }
+        };
+        final List<String> delivered = Lists.newArrayList( new RangeScanIterator<String>( source, null, pageSize,
+                new Function<Map.Entry<String, List<Column>>, String>() {
+                    @Override
+                    public String apply( final Map.Entry<String, List<Column>> row ) {
+                        return row.getKey();
+                    }
+                } ) );
+        checkExactlyOnce( "paging with page size " + pageSize, new HashSet<String>( ordered ), delivered );
+        if ( pageSize < ordered.size() && requests.size() < 2 ) {
+            throw new IllegalStateException( "Paging with page size " + pageSize + " did not request a follow-up page" );
+        }
+    }
+
+    private static void checkExactlyOnce( final String scan, final Set<String> expected, final List<String> delivered ) {
+        final Set<String> seen = new HashSet<String>();
+        for ( final String id : delivered ) {
+            if ( !seen.add( id ) ) {
+                throw new IllegalStateException( scan + " delivered " + id + " twice" );
+            }
+            if ( !expected.contains( id ) ) {
+                throw new IllegalStateException( scan + " delivered unknown row " + id );
+            }
+        }
+        if ( seen.size() != expected.size() ) {
+            final Set<String> missing = new HashSet<String>( expected );
+            missing.removeAll( seen );
+            throw new IllegalStateException( scan + " missed " + missing.size() + " rows, e.g. " + missing.iterator().next() );
+        }
+    }
+
+}
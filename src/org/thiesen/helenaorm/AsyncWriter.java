@@ -0,0 +1,304 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import me.prettyprint.cassandra.service.BatchMutation;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * Queues writes and sends them from a fixed number of writer threads. Each writer thread drains
+ * whatever is queued, up to the maximum batch size, into a single batch_mutate call, so at most
+ * one mutation per writer thread is in flight at any time.
+ */
+class AsyncWriter {
+
+    private static final Log LOG = LogFactory.getLog( AsyncWriter.class );
+
+    private static final long POLL_INTERVAL_MILLIS = 100;
+
+    /**
+     * A single queued write. The object has already been marshalled, adding it to a
+     * mutation must not depend on mutable caller state.
+     */
+    interface Write {
+        void addTo( BatchMutation mutation );
+    }
+
+    interface Sink {
+        /**
+         * @param writes the writes that have been added to the mutation
+         */
+        void batchMutate( BatchMutation mutation, List<Write> writes );
+    }
+
+    private final Sink _sink;
+    private final int _maxBatchSize;
+    private final QueueFullPolicy _queueFullPolicy;
+    private final BlockingQueue<WriteFuture> _queue;
+    private final Set<WriteFuture> _outstanding = Collections.newSetFromMap( new ConcurrentHashMap<WriteFuture, Boolean>() );
+    private final ExecutorService _writers;
+
+    /**
+     * Submitting holds the read lock from the shutdown check until the write is queued, so no write
+     * is queued after the writers have been told to stop.
+     */
+    private final ReadWriteLock _lifecycle = new ReentrantReadWriteLock();
+    private volatile boolean _shutdown;
+
+    AsyncWriter( final String name, final Sink sink, final int maxInFlight, final int queueCapacity,
+            final int maxBatchSize, final QueueFullPolicy queueFullPolicy ) {
+        if ( maxInFlight < 1 || queueCapacity < 1 || maxBatchSize < 1 ) {
+            throw new IllegalArgumentException( "In flight mutations, queue capacity and batch size must be positive" );
+        }
+        _sink = sink;
+        _maxBatchSize = maxBatchSize;
+        _queueFullPolicy = queueFullPolicy;
+        _queue = new LinkedBlockingQueue<WriteFuture>( queueCapacity );
+        _writers = Executors.newFixedThreadPool( maxInFlight, new DaemonThreadFactory( "helena-writer-" + name ) );
+        for ( int i = 0; i < maxInFlight; i++ ) {
+            _writers.execute( new Runnable() {
+                @Override
+                public void run() {
+                    drain();
+                }
+            } );
+        }
+    }
+
+    /**
+     * @return the future of the queued write, or null if this writer has been shut down
+     */
+    Future<Void> trySubmit( final Write write ) {
+        _lifecycle.readLock().lock();
+        try {
+            if ( _shutdown ) {
+                return null;
+            }
+            final WriteFuture future = new WriteFuture( write );
+            _outstanding.add( future );
+            if ( _queueFullPolicy == QueueFullPolicy.BLOCK ) {
+                try {
+                    _queue.put( future );
+                } catch ( final InterruptedException e ) {
+                    _outstanding.remove( future );
+                    Thread.currentThread().interrupt();
+                    throw new HelenaRuntimeException( "Interrupted while waiting for room in the write queue", e );
+                }
+            } else if ( !_queue.offer( future ) ) {
+                _outstanding.remove( future );
+                throw new HelenaRuntimeException( "Write queue is full, rejecting write" );
+            }
+            return future;
+        } finally {
+            _lifecycle.readLock().unlock();
+        }
+    }
+
+    /**
+     * Waits until every write submitted before this call has been sent, successfully or not.
+     * Failures are reported through the futures returned by {@link #trySubmit(Write)}.
+     */
+    void flush() {
+        for ( final WriteFuture future : ImmutableList.copyOf( _outstanding ) ) {
+            try {
+                future.await();
+            } catch ( final InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                throw new HelenaRuntimeException( "Interrupted while flushing writes", e );
+            }
+        }
+    }
+
+    /**
+     * Stops accepting writes, sends everything that is still queued and waits for the writer threads
+     * to stop. If the calling thread is interrupted while waiting, the writers are interrupted as well.
+     * Every write that has not been sent by then fails.
+     */
+    void shutdown() {
+        _lifecycle.writeLock().lock();
+        try {
+            _shutdown = true;
+        } finally {
+            _lifecycle.writeLock().unlock();
+        }
+        _writers.shutdown();
+        try {
+            while ( !_writers.awaitTermination( POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS ) ) {
+                // the writers stop once the queue is empty
+            }
+        } catch ( final InterruptedException e ) {
+            _writers.shutdownNow();
+            Thread.currentThread().interrupt();
+        } finally {
+            failUnsent();
+        }
+    }
+
+    private void failUnsent() {
+        final List<WriteFuture> unsent = Lists.newArrayList();
+        _queue.drainTo( unsent );
+        unsent.addAll( _outstanding );
+        for ( final WriteFuture future : unsent ) {
+            if ( !future.isDone() ) {
+                complete( future, new HelenaRuntimeException( "Asynchronous writes have been shut down before the write was sent" ) );
+            }
+        }
+    }
+
+    private void drain() {
+        final List<WriteFuture> batch = Lists.newArrayListWithCapacity( _maxBatchSize );
+        while ( !_shutdown || !_queue.isEmpty() ) {
+            try {
+                final WriteFuture first = _queue.poll( POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS );
+                if ( first == null ) {
+                    continue;
+                }
+                batch.add( first );
+                _queue.drainTo( batch, _maxBatchSize - 1 );
+                send( batch );
+            } catch ( final InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void send( final List<WriteFuture> batch ) {
+        final BatchMutation mutation = new BatchMutation();
+        final List<WriteFuture> added = Lists.newArrayListWithCapacity( batch.size() );
+        final List<Write> writes = Lists.newArrayListWithCapacity( batch.size() );
+        for ( final WriteFuture future : batch ) {
+            try {
+                future._write.addTo( mutation );
+                added.add( future );
+                writes.add( future._write );
+            } catch ( final RuntimeException e ) {
+                complete( future, e );
+            }
+        }
+        if ( added.isEmpty() ) {
+            return;
+        }
+
+        RuntimeException failure = null;
+        try {
+            _sink.batchMutate( mutation, writes );
+        } catch ( final RuntimeException e ) {
+            LOG.warn( "Asynchronous batch of " + added.size() + " writes failed", e );
+            failure = e;
+        }
+        for ( final WriteFuture future : added ) {
+            complete( future, failure );
+        }
+    }
+
+    private void complete( final WriteFuture future, final Throwable failure ) {
+        synchronized ( future ) {
+            if ( future.isDone() ) {
+                return;
+            }
+            future._failure = failure;
+            future._done.countDown();
+        }
+        _outstanding.remove( future );
+    }
+
+    private static final class WriteFuture implements Future<Void> {
+
+        private final Write _write;
+        private final CountDownLatch _done = new CountDownLatch( 1 );
+        private volatile Throwable _failure;
+
+        WriteFuture( final Write write ) {
+            _write = write;
+        }
+
+        void await() throws InterruptedException {
+            _done.await();
+        }
+
+        @Override
+        public boolean cancel( final boolean mayInterruptIfRunning ) {
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public boolean isDone() {
+            return _done.getCount() == 0;
+        }
+
+        @Override
+        public Void get() throws InterruptedException, ExecutionException {
+            _done.await();
+            return result();
+        }
+
+        @Override
+        public Void get( final long timeout, final TimeUnit unit ) throws InterruptedException, ExecutionException, TimeoutException {
+            if ( !_done.await( timeout, unit ) ) {
+                throw new TimeoutException();
+            }
+            return result();
+        }
+
+        private Void result() throws ExecutionException {
+            if ( _failure != null ) {
+                throw new ExecutionException( _failure );
+            }
+            return null;
+        }
+
+    }
+
+}
@@ -0,0 +1,214 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm;
+
+import java.beans.PropertyDescriptor;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+
+import org.apache.commons.beanutils.PropertyUtils;
+import org.thiesen.helenaorm.annotations.DeleteIfNull;
+import org.thiesen.helenaorm.annotations.KeyProperty;
+import org.thiesen.helenaorm.annotations.SuperColumnProperty;
+import org.thiesen.helenaorm.annotations.Transient;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+
+/**
+ * The precompiled mapping plan of a {@link org.thiesen.helenaorm.annotations.HelenaBean} class.
+ * All annotation scans happen once at construction time, the result is immutable.
+ */
+class BeanMapping<T> {
+
+    private final Class<T> _clz;
+    private final PropertyMapping _key;
+    private final PropertyMapping _superColumn;
+    private final ImmutableList<PropertyMapping> _columns;
+    private final BytesIndex<PropertyMapping> _columnsByName;
+    private final ImmutableList<byte[]> _propertyColumnNames;
+
+    private BeanMapping( final Class<T> clz, final PropertyMapping key, final PropertyMapping superColumn,
+            final ImmutableList<PropertyMapping> columns, final ImmutableList<byte[]> propertyColumnNames ) {
+        _clz = clz;
+        _key = key;
+        _superColumn = superColumn;
+        _columns = columns;
+        final Map<byte[], PropertyMapping> columnsByName = Maps.newHashMap();
+        for ( final PropertyMapping column : columns ) {
+            columnsByName.put( column.getColumnName(), column );
+        }
+        _columnsByName = new BytesIndex<PropertyMapping>( columnsByName );
+        _propertyColumnNames = propertyColumnNames;
+    }
+
+    /**
+     * @param fieldAccess whether primitive properties are read and written through their fields
+     */
+    static <T> BeanMapping<T> create( final Class<T> clz, final TypeConverter typeConverter, final boolean fieldAccess ) {
+        final Map<String, Field> fields = Maps.newHashMap();
+        for ( final Field field : clz.getDeclaredFields() ) {
+            fields.put( field.getName(), field );
+        }
+
+        PropertyMapping key = null;
+        PropertyMapping superColumn = null;
+        final ImmutableList.Builder<PropertyMapping> columns = ImmutableList.builder();
+        final ImmutableSet.Builder<byte[]> propertyColumnNames = ImmutableSet.builder();
+
+        for ( final PropertyDescriptor descriptor : PropertyUtils.getPropertyDescriptors( clz ) ) {
+            final PropertyMapping property = new PropertyMapping( descriptor, typeConverter,
+                    isAnnotationPresent( fields, descriptor, DeleteIfNull.class ),
+                    fieldAccess ? findInstanceField( clz, descriptor.getName() ) : null );
+            propertyColumnNames.add( property.getColumnName() );
+
+            if ( isAnnotationPresent( fields, descriptor, KeyProperty.class ) ) {
+                requireReadWrite( clz, descriptor, "Key" );
+                key = property;
+            } else if ( isAnnotationPresent( fields, descriptor, SuperColumnProperty.class ) ) {
+                requireReadWrite( clz, descriptor, "Super column" );
+                superColumn = property;
+            } else if ( isReadWrite( descriptor ) && !isAnnotationPresent( fields, descriptor, Transient.class ) ) {
+                columns.add( property );
+            }
+        }
+
+        if ( key == null ) {
+            throw new HelenaRuntimeException("Could not find key of class " + clz.getName() + ", did you annotate with @KeyProperty" );
+        }
+
+        return new BeanMapping<T>( clz, key, superColumn, columns.build(), ImmutableList.copyOf( propertyColumnNames.build() ) );
+    }
+
+    /**
+     * The key and super column are written into every object that is read, so they need both accessors.
+     */
+    private static void requireReadWrite( final Class<?> clz, final PropertyDescriptor descriptor, final String role ) {
+        if ( !isReadWrite( descriptor ) ) {
+            throw new HelenaRuntimeException( role + " property " + descriptor.getName() + " of class " + clz.getName()
+                    + " needs a getter and a setter" );
+        }
+    }
+
+    /**
+     * @return the field named like the property, or like the property prefixed with an underscore
+     */
+    private static Field findInstanceField( final Class<?> clz, final String name ) {
+        for ( Class<?> c = clz; c != null && c != Object.class; c = c.getSuperclass() ) {
+            Field candidate = null;
+            for ( final Field field : c.getDeclaredFields() ) {
+                if ( field.getName().equals( name ) || candidate == null && field.getName().equals( "_" + name ) ) {
+                    candidate = field;
+                }
+            }
+            if ( candidate != null ) {
+                final int modifiers = candidate.getModifiers();
+                return Modifier.isStatic( modifiers ) || Modifier.isFinal( modifiers ) ? null : candidate;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isReadWrite( final PropertyDescriptor d ) {
+        return d.getReadMethod() != null && d.getWriteMethod() != null;
+    }
+
+    private static boolean isAnnotationPresent( final Map<String, Field> fields, final PropertyDescriptor d,
+            final Class<? extends Annotation> annotation ) {
+        return nullSafeAnnotationPresent( annotation, fields.get( d.getName() ) ) ||
+            nullSafeAnnotationPresent( annotation, d.getReadMethod() ) ||
+            nullSafeAnnotationPresent( annotation, d.getWriteMethod() );
+    }
+
+    private static boolean nullSafeAnnotationPresent( final Class<? extends Annotation> annotation, final Method method ) {
+        return method != null && method.isAnnotationPresent( annotation );
+    }
+
+    private static boolean nullSafeAnnotationPresent( final Class<? extends Annotation> annotation, final Field field ) {
+        return field != null && field.isAnnotationPresent( annotation );
+    }
+
+    T newInstance() {
+        try {
+            return _clz.newInstance();
+        } catch ( final InstantiationException e ) {
+            throw new HelenaRuntimeException("Could not instanciate " + _clz.getName(), e );
+        } catch ( final IllegalAccessException e ) {
+            throw new HelenaRuntimeException("Could not instanciate " + _clz.getName(), e );
+        }
+    }
+
+    Class<T> getMappedClass() {
+        return _clz;
+    }
+
+    PropertyMapping getKey() {
+        return _key;
+    }
+
+    PropertyMapping getSuperColumn() {
+        return _superColumn;
+    }
+
+    boolean isSuperColumnMapped() {
+        return _superColumn != null;
+    }
+
+    ImmutableList<PropertyMapping> getColumns() {
+        return _columns;
+    }
+
+    /**
+     * @return the column property for the given raw column name, or null if the column is not mapped
+     */
+    PropertyMapping getColumn( final byte[] name ) {
+        return _columnsByName.get( name );
+    }
+
+    /**
+     * @return the column property with the given property name, or null if there is none
+     */
+    PropertyMapping getColumn( final String propertyName ) {
+        for ( final PropertyMapping column : _columns ) {
+            if ( column.getName().equals( propertyName ) ) {
+                return column;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the names of all bean properties, used as the default slice predicate
+     */
+    ImmutableList<byte[]> getPropertyColumnNames() {
+        return _propertyColumnNames;
+    }
+
+}
@@ -0,0 +1,57 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link TypeMapping} that encodes into and decodes from a region of a larger buffer, without an
+ * intermediate array per value. Like {@link #toBytes(Object)}, null is stored as zero bytes.
+ *
+ * Plain mappings can be used where a buffer mapping is expected through
+ * {@link BufferTypeMappings#adapt(TypeMapping)}.
+ */
+public interface BufferTypeMapping<T> extends TypeMapping<T> {
+
+    /**
+     * @return the number of bytes {@link #encode(Object, ByteBuffer)} writes for the value, or an
+     * upper bound of it
+     */
+    public abstract int sizeHint( T value );
+
+    /**
+     * Writes the value at the position of the target and advances the position. The caller makes
+     * sure at least {@link #sizeHint(Object)} bytes remain.
+     */
+    public abstract void encode( T value, ByteBuffer target );
+
+    /**
+     * Reads the value stored in the given bytes of the source, without changing its position.
+     * @param offset the absolute index of the first byte
+     */
+    public abstract T decode( ByteBuffer source, int offset, int length );
+
+}
@@ -0,0 +1,109 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Adapts plain {@link TypeMapping}s to {@link BufferTypeMapping}, so custom mappings written against
+ * the array based interface keep working wherever buffer mappings are used.
+ */
+public final class BufferTypeMappings {
+
+    private BufferTypeMappings() {
+        // static helpers only
+    }
+
+    /**
+     * @return the mapping itself if it already is a buffer mapping, otherwise an adapter that copies
+     * between the buffer and the arrays of the mapping
+     */
+    public static <T> BufferTypeMapping<T> adapt( final TypeMapping<T> mapping ) {
+        if ( mapping instanceof BufferTypeMapping<?> ) {
+            return (BufferTypeMapping<T>) mapping;
+        }
+        return new ArrayTypeMappingAdapter<T>( mapping );
+    }
+
+    /**
+     * @return a copy of the bytes of the region, for decoders that need an array
+     */
+    public static byte[] toArray( final ByteBuffer source, final int offset, final int length ) {
+        final byte[] result = new byte[length];
+        if ( source.hasArray() ) {
+            System.arraycopy( source.array(), source.arrayOffset() + offset, result, 0, length );
+        } else {
+            for ( int i = 0; i < length; i++ ) {
+                result[i] = source.get( offset + i );
+            }
+        }
+        return result;
+    }
+
+    private static final class ArrayTypeMappingAdapter<T> implements BufferTypeMapping<T> {
+
+        private final TypeMapping<T> _mapping;
+
+        ArrayTypeMappingAdapter( final TypeMapping<T> mapping ) {
+            _mapping = mapping;
+        }
+
+        @Override
+        public byte[] toBytes( final Object value ) {
+            return _mapping.toBytes( value );
+        }
+
+        @Override
+        public T fromBytes( final byte[] value ) {
+            return _mapping.fromBytes( value );
+        }
+
+        /**
+         * Array based mappings can only tell the size by encoding the value.
+         */
+        @Override
+        public int sizeHint( final T value ) {
+            return _mapping.toBytes( value ).length;
+        }
+
+        @Override
+        public void encode( final T value, final ByteBuffer target ) {
+            target.put( _mapping.toBytes( value ) );
+        }
+
+        @Override
+        public T decode( final ByteBuffer source, final int offset, final int length ) {
+            return _mapping.fromBytes( toArray( source, offset, length ) );
+        }
+
+        @Override
+        public String toString() {
+            return "BufferTypeMapping[" + _mapping + "]";
+        }
+
+    }
+
+}
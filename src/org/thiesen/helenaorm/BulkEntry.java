@@ -0,0 +1,151 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigInteger;
+
+/**
+ * A single column of a bulk load. Entries sort in the order Cassandra stores them: by the token of
+ * their row key, then by key and column name. Of several entries for the same column the one added
+ * last sorts first.
+ */
+final class BulkEntry implements Comparable<BulkEntry> {
+
+    private final BigInteger _token;
+    private final String _key;
+    private final byte[] _name;
+    private final byte[] _value;
+    private final long _timestamp;
+    private final long _sequence;
+
+    BulkEntry( final BigInteger token, final String key, final byte[] name, final byte[] value,
+            final long timestamp, final long sequence ) {
+        _token = token;
+        _key = key;
+        _name = name;
+        _value = value;
+        _timestamp = timestamp;
+        _sequence = sequence;
+    }
+
+    String getKey() {
+        return _key;
+    }
+
+    byte[] getName() {
+        return _name;
+    }
+
+    byte[] getValue() {
+        return _value;
+    }
+
+    long getTimestamp() {
+        return _timestamp;
+    }
+
+    /**
+     * @return a rough estimate of the heap the entry occupies
+     */
+    long estimateSize() {
+        return 96 + 2 * _key.length() + _name.length + _value.length;
+    }
+
+    boolean isSameColumn( final BulkEntry other ) {
+        return other != null && _key.equals( other._key ) && compareBytes( _name, other._name ) == 0;
+    }
+
+    @Override
+    public int compareTo( final BulkEntry other ) {
+        int result = _token.compareTo( other._token );
+        if ( result == 0 ) {
+            result = _key.compareTo( other._key );
+        }
+        if ( result == 0 ) {
+            result = compareBytes( _name, other._name );
+        }
+        if ( result == 0 ) {
+            result = _sequence < other._sequence ? 1 : ( _sequence == other._sequence ? 0 : -1 );
+        }
+        return result;
+    }
+
+    private static int compareBytes( final byte[] left, final byte[] right ) {
+        final int length = Math.min( left.length, right.length );
+        for ( int i = 0; i < length; i++ ) {
+            final int difference = ( left[i] & 0xFF ) - ( right[i] & 0xFF );
+            if ( difference != 0 ) {
+                return difference;
+            }
+        }
+        return left.length - right.length;
+    }
+
+    void writeTo( final DataOutputStream out ) throws IOException {
+        final byte[] token = _token.toByteArray();
+        out.writeByte( token.length );
+        out.write( token );
+        out.writeUTF( _key );
+        writeBytes( out, _name );
+        writeBytes( out, _value );
+        out.writeLong( _timestamp );
+        out.writeLong( _sequence );
+    }
+
+    /**
+     * @return the next entry of the stream, or null at its end
+     */
+    static BulkEntry readFrom( final DataInputStream in ) throws IOException {
+        final int tokenLength;
+        try {
+            tokenLength = in.readUnsignedByte();
+        } catch ( final EOFException e ) {
+            return null;
+        }
+        final byte[] token = new byte[tokenLength];
+        in.readFully( token );
+        final String key = in.readUTF();
+        final byte[] name = readBytes( in );
+        final byte[] value = readBytes( in );
+        return new BulkEntry( new BigInteger( token ), key, name, value, in.readLong(), in.readLong() );
+    }
+
+    private static void writeBytes( final DataOutputStream out, final byte[] bytes ) throws IOException {
+        out.writeInt( bytes.length );
+        out.write( bytes );
+    }
+
+    private static byte[] readBytes( final DataInputStream in ) throws IOException {
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully( bytes );
+        return bytes;
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Immutable open addressing hash table keyed on raw byte arrays, so that column
+ * names and similar keys can be resolved without decoding them first.
+ */
+final class BytesIndex<V> {
+
+    private final byte[][] _keys;
+    private final Object[] _values;
+    private final int _mask;
+
+    BytesIndex( final Map<byte[], ? extends V> entries ) {
+        int capacity = 2;
+        while ( capacity < entries.size() * 2 ) {
+            capacity <<= 1;
+        }
+        _keys = new byte[capacity][];
+        _values = new Object[capacity];
+        _mask = capacity - 1;
+
+        for ( final Map.Entry<byte[], ? extends V> entry : entries.entrySet() ) {
+            int slot = hash( entry.getKey(), 0, entry.getKey().length ) & _mask;
+            while ( _keys[slot] != null ) {
+                if ( Arrays.equals( _keys[slot], entry.getKey() ) ) {
+                    throw new IllegalArgumentException( "Duplicate key " + Arrays.toString( entry.getKey() ) );
+                }
+                slot = ( slot + 1 ) & _mask;
+            }
+            _keys[slot] = entry.getKey();
+            _values[slot] = entry.getValue();
+        }
+    }
+
+    V get( final byte[] key ) {
+        return get( key, 0, key.length );
+    }
+
+    @SuppressWarnings( "unchecked" )
+    V get( final byte[] key, final int offset, final int length ) {
+        int slot = hash( key, offset, length ) & _mask;
+        byte[] candidate;
+        while ( ( candidate = _keys[slot] ) != null ) {
+            if ( regionEquals( candidate, key, offset, length ) ) {
+                return (V) _values[slot];
+            }
+            slot = ( slot + 1 ) & _mask;
+        }
+        return null;
+    }
+
+    private static boolean regionEquals( final byte[] candidate, final byte[] key, final int offset, final int length ) {
+        if ( candidate.length != length ) {
+            return false;
+        }
+        for ( int i = 0; i < length; i++ ) {
+            if ( candidate[i] != key[offset + i] ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash( final byte[] key, final int offset, final int length ) {
+        int h = 1;
+        for ( int i = offset; i < offset + length; i++ ) {
+            h = 31 * h + key[i];
+        }
+        return h ^ ( h >>> 16 );
+    }
+
+}
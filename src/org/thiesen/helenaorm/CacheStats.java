@@ -0,0 +1,100 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm;
+
+/**
+ * A snapshot of the counters of a row cache, see {@link HelenaDAO#getCacheStats()}.
+ */
+public class CacheStats {
+
+    private final long _hitCount;
+    private final long _missCount;
+    private final long _evictionCount;
+    private final long _expirationCount;
+    private final int _size;
+    private final long _weight;
+
+    CacheStats( final long hitCount, final long missCount, final long evictionCount, final long expirationCount,
+            final int size, final long weight ) {
+        _hitCount = hitCount;
+        _missCount = missCount;
+        _evictionCount = evictionCount;
+        _expirationCount = expirationCount;
+        _size = size;
+        _weight = weight;
+    }
+
+    public long getHitCount() {
+        return _hitCount;
+    }
+
+    public long getMissCount() {
+        return _missCount;
+    }
+
+    /**
+     * @return the fraction of lookups that were served from the cache, 0 if there were none
+     */
+    public double getHitRate() {
+        final long requests = _hitCount + _missCount;
+        return requests == 0 ? 0 : (double) _hitCount / requests;
+    }
+
+    /**
+     * @return the number of rows removed to stay within the size limits
+     */
+    public long getEvictionCount() {
+        return _evictionCount;
+    }
+
+    /**
+     * @return the number of rows removed because their time to live had passed
+     */
+    public long getExpirationCount() {
+        return _expirationCount;
+    }
+
+    /**
+     * @return the number of rows currently cached
+     */
+    public int getSize() {
+        return _size;
+    }
+
+    /**
+     * @return the estimated size of the currently cached rows in bytes
+     */
+    public long getWeight() {
+        return _weight;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats [hits=" + _hitCount + ", misses=" + _missCount + ", evictions=" + _evictionCount
+            + ", expirations=" + _expirationCount + ", size=" + _size + ", weight=" + _weight + "]";
+    }
+
+}
@@ -0,0 +1,145 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single DAO call that crossed one of the thresholds of a {@link CallSampler}.
+ */
+public final class CallSample {
+
+    private final String _keyspace;
+    private final String _columnFamily;
+    private final Operation _operation;
+    private final long _nanos;
+    private final long _keys;
+    private final long _columns;
+    private final long _bytes;
+    private final byte[] _largestColumnName;
+    private final long _largestColumnBytes;
+    private final boolean _failed;
+
+    CallSample( final String keyspace, final String columnFamily, final Operation operation, final long nanos,
+            final long keys, final long columns, final long bytes, final byte[] largestColumnName,
+            final long largestColumnBytes, final boolean failed ) {
+        _keyspace = keyspace;
+        _columnFamily = columnFamily;
+        _operation = operation;
+        _nanos = nanos;
+        _keys = keys;
+        _columns = columns;
+        _bytes = bytes;
+        _largestColumnName = largestColumnName;
+        _largestColumnBytes = largestColumnBytes;
+        _failed = failed;
+    }
+
+    public String getKeyspace() {
+        return _keyspace;
+    }
+
+    public String getColumnFamily() {
+        return _columnFamily;
+    }
+
+    public Operation getOperation() {
+        return _operation;
+    }
+
+    public long getDuration( final TimeUnit unit ) {
+        return unit.convert( _nanos, TimeUnit.NANOSECONDS );
+    }
+
+    /**
+     * @return the number of keys requested or rows returned, whichever is larger
+     */
+    public long getKeyCount() {
+        return _keys;
+    }
+
+    public long getColumnCount() {
+        return _columns;
+    }
+
+    /**
+     * @return the size of all column names and values read or written
+     */
+    public long getBytes() {
+        return _bytes;
+    }
+
+    /**
+     * @return the name of the largest column, or null if the call did not read or write columns
+     */
+    public byte[] getLargestColumnName() {
+        return _largestColumnName == null ? null : _largestColumnName.clone();
+    }
+
+    public long getLargestColumnBytes() {
+        return _largestColumnBytes;
+    }
+
+    public boolean isFailed() {
+        return _failed;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append( _failed ? "Failed " : "" ).append( _operation.getName() ).append( " on " )
+            .append( _keyspace ).append( '/' ).append( _columnFamily ).append( ": " )
+            .append( getDuration( TimeUnit.MILLISECONDS ) ).append( " ms, " )
+            .append( _keys ).append( " keys, " )
+            .append( _columns ).append( " columns, " )
+            .append( _bytes ).append( " bytes" );
+        if ( _largestColumnName != null ) {
+            builder.append( ", largest column " ).append( printable( _largestColumnName ) )
+                .append( " with " ).append( _largestColumnBytes ).append( " bytes" );
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Column names are shown as text if they are printable ASCII, in hex otherwise.
+     */
+    private static String printable( final byte[] name ) {
+        final StringBuilder builder = new StringBuilder( name.length + 2 );
+        for ( final byte b : name ) {
+            if ( b < 0x20 || b > 0x7E ) {
+                builder.setLength( 0 );
+                builder.append( "0x" );
+                for ( final byte h : name ) {
+                    builder.append( Character.forDigit( ( h >> 4 ) & 0xF, 16 ) ).append( Character.forDigit( h & 0xF, 16 ) );
+                }
+                return builder.toString();
+            }
+            builder.append( (char) b );
+        }
+        return "'" + builder + "'";
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Logs the DAO calls that take longer, move more bytes or touch more keys than configured, e.g. a
+ * range read returning a huge number of rows or an insert of a large serialized value. Install it with
+ * {@link HelenaMetrics#setSampler(CallSampler)}. Calls below all thresholds cost a few comparisons.
+ *
+ * At most {@link #setMaxSamplesPerSecond(int)} calls are logged per second, the others are counted
+ * and the count is logged with the next sample. Override {@link #sample(CallSample)} to send samples
+ * somewhere else than the log.
+ */
+public class CallSampler {
+
+    private static final Log LOG = LogFactory.getLog( CallSampler.class );
+
+    private volatile long _latencyThresholdNanos = Long.MAX_VALUE;
+    private volatile long _bytesThreshold = Long.MAX_VALUE;
+    private volatile long _keysThreshold = Long.MAX_VALUE;
+    private volatile int _maxSamplesPerSecond = 10;
+
+    private long _second;
+    private int _samplesThisSecond;
+    private long _suppressed;
+
+    public CallSampler setLatencyThreshold( final long latency, final TimeUnit unit ) {
+        _latencyThresholdNanos = unit.toNanos( latency );
+        return this;
+    }
+
+    /**
+     * @param bytes the size of column names and values read or written by a single call
+     */
+    public CallSampler setBytesThreshold( final long bytes ) {
+        _bytesThreshold = bytes;
+        return this;
+    }
+
+    /**
+     * @param keys the number of keys requested or rows returned by a single call
+     */
+    public CallSampler setKeysThreshold( final long keys ) {
+        _keysThreshold = keys;
+        return this;
+    }
+
+    public CallSampler setMaxSamplesPerSecond( final int maxSamplesPerSecond ) {
+        if ( maxSamplesPerSecond < 1 ) {
+            throw new IllegalArgumentException( "Samples per second must be positive, was " + maxSamplesPerSecond );
+        }
+        _maxSamplesPerSecond = maxSamplesPerSecond;
+        return this;
+    }
+
+    boolean isSampled( final long nanos, final long bytes, final long keys ) {
+        return nanos >= _latencyThresholdNanos || bytes >= _bytesThreshold || keys >= _keysThreshold;
+    }
+
+    void offer( final CallSample sample ) {
+        final long suppressed;
+        synchronized ( this ) {
+            final long second = System.nanoTime() / 1000000000L;
+            if ( second != _second ) {
+                _second = second;
+                _samplesThisSecond = 0;
+            }
+            if ( _samplesThisSecond >= _maxSamplesPerSecond ) {
+                _suppressed++;
+                return;
+            }
+            _samplesThisSecond++;
+            suppressed = _suppressed;
+            _suppressed = 0;
+        }
+        if ( suppressed > 0 ) {
+            LOG.warn( suppressed + " sampled calls were not logged because of the rate limit" );
+        }
+        sample( sample );
+    }
+
+    /**
+     * Called on the thread that made the call, after the call has finished.
+     */
+    protected void sample( final CallSample sample ) {
+        LOG.warn( sample );
+    }
+
+}
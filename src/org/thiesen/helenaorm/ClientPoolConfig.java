@@ -0,0 +1,145 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm;
+
+import me.prettyprint.cassandra.service.CassandraHost;
+import me.prettyprint.cassandra.service.CassandraHostConfigurator;
+import me.prettyprint.cassandra.service.ExhaustedPolicy;
+
+/**
+ * Settings for the connection pool a {@link HelenaORMDAOFactory} shares between all its DAOs.
+ * All limits apply per Cassandra node. Defaults are the ones of Hector.
+ */
+public class ClientPoolConfig {
+
+    private int _maxActive = CassandraHost.DEFAULT_MAX_ACTIVE;
+    private int _maxIdle = CassandraHost.DEFAULT_MAX_IDLE;
+    private long _maxWaitTimeWhenExhausted = CassandraHost.DEFAULT_MAX_WAITTIME_WHEN_EXHAUSTED;
+    private long _minEvictableIdleTimeMillis = CassandraHost.DEFAULT_MIN_EVICTABLE_IDLE_TIME_MILLIS;
+    private long _timeBetweenEvictionRunsMillis = CassandraHost.DEFAULT_TIME_BETWEEN_EVICTION_RUNS_MILLIS;
+    private ExhaustedPolicy _exhaustedPolicy;
+    private int _socketTimeout;
+
+    public int getMaxActive() {
+        return _maxActive;
+    }
+
+    /**
+     * @param maxActive the maximum number of connections per node
+     */
+    public ClientPoolConfig setMaxActive( final int maxActive ) {
+        _maxActive = maxActive;
+        return this;
+    }
+
+    public int getMaxIdle() {
+        return _maxIdle;
+    }
+
+    /**
+     * @param maxIdle the maximum number of idle connections kept per node, negative for no limit
+     */
+    public ClientPoolConfig setMaxIdle( final int maxIdle ) {
+        _maxIdle = maxIdle;
+        return this;
+    }
+
+    public long getMaxWaitTimeWhenExhausted() {
+        return _maxWaitTimeWhenExhausted;
+    }
+
+    /**
+     * @param maxWaitTimeWhenExhausted how long borrowing a connection may block in milliseconds, negative to wait forever
+     */
+    public ClientPoolConfig setMaxWaitTimeWhenExhausted( final long maxWaitTimeWhenExhausted ) {
+        _maxWaitTimeWhenExhausted = maxWaitTimeWhenExhausted;
+        return this;
+    }
+
+    public long getMinEvictableIdleTimeMillis() {
+        return _minEvictableIdleTimeMillis;
+    }
+
+    public ClientPoolConfig setMinEvictableIdleTimeMillis( final long minEvictableIdleTimeMillis ) {
+        _minEvictableIdleTimeMillis = minEvictableIdleTimeMillis;
+        return this;
+    }
+
+    public long getTimeBetweenEvictionRunsMillis() {
+        return _timeBetweenEvictionRunsMillis;
+    }
+
+    public ClientPoolConfig setTimeBetweenEvictionRunsMillis( final long timeBetweenEvictionRunsMillis ) {
+        _timeBetweenEvictionRunsMillis = timeBetweenEvictionRunsMillis;
+        return this;
+    }
+
+    public ExhaustedPolicy getExhaustedPolicy() {
+        return _exhaustedPolicy;
+    }
+
+    public ClientPoolConfig setExhaustedPolicy( final ExhaustedPolicy exhaustedPolicy ) {
+        _exhaustedPolicy = exhaustedPolicy;
+        return this;
+    }
+
+    public int getSocketTimeout() {
+        return _socketTimeout;
+    }
+
+    /**
+     * @param socketTimeout the Thrift socket timeout in milliseconds, zero keeps Hector's default
+     */
+    public ClientPoolConfig setSocketTimeout( final int socketTimeout ) {
+        _socketTimeout = socketTimeout;
+        return this;
+    }
+
+    CassandraHostConfigurator toConfigurator( final String[] hosts ) {
+        final StringBuilder hostList = new StringBuilder();
+        for ( final String host : hosts ) {
+            if ( hostList.length() > 0 ) {
+                hostList.append( ',' );
+            }
+            hostList.append( host );
+        }
+
+        final CassandraHostConfigurator configurator = new CassandraHostConfigurator( hostList.toString() );
+        configurator.setMaxActive( _maxActive );
+        configurator.setMaxIdle( _maxIdle );
+        configurator.setMaxWaitTimeWhenExhausted( _maxWaitTimeWhenExhausted );
+        configurator.setMinEvictableIdleTimeMillis( _minEvictableIdleTimeMillis );
+        configurator.setTimeBetweenEvictionRunsMillis( _timeBetweenEvictionRunsMillis );
+        if ( _exhaustedPolicy != null ) {
+            configurator.setExhaustedPolicy( _exhaustedPolicy );
+        }
+        if ( _socketTimeout > 0 ) {
+            configurator.setCassandraThriftSocketTimeout( _socketTimeout );
+        }
+        return configurator;
+    }
+
+}
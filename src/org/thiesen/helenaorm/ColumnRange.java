@@ -0,0 +1,96 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm;
+
+/**
+ * The part of a wide row a column iterator walks through. Start and finish are column values as
+ * they are set on the bean, both are inclusive and refer to the iteration order, so a reversed
+ * range starts at the higher column. A null bound leaves that end of the row open.
+ *
+ * Ranges are immutable, every modifier returns a new range.
+ */
+public final class ColumnRange {
+
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
+    private static final ColumnRange ALL = new ColumnRange( null, null, false, DEFAULT_PAGE_SIZE );
+
+    private final Object _start;
+    private final Object _finish;
+    private final boolean _reversed;
+    private final int _pageSize;
+
+    private ColumnRange( final Object start, final Object finish, final boolean reversed, final int pageSize ) {
+        if ( pageSize < 1 ) {
+            throw new IllegalArgumentException( "Page size must be positive, was " + pageSize );
+        }
+        _start = start;
+        _finish = finish;
+        _reversed = reversed;
+        _pageSize = pageSize;
+    }
+
+    public static ColumnRange all() {
+        return ALL;
+    }
+
+    public static ColumnRange between( final Object start, final Object finish ) {
+        return new ColumnRange( start, finish, false, DEFAULT_PAGE_SIZE );
+    }
+
+    public ColumnRange reversed() {
+        return new ColumnRange( _start, _finish, !_reversed, _pageSize );
+    }
+
+    /**
+     * @param pageSize the number of columns read per call
+     */
+    public ColumnRange withPageSize( final int pageSize ) {
+        return new ColumnRange( _start, _finish, _reversed, pageSize );
+    }
+
+    public Object getStart() {
+        return _start;
+    }
+
+    public Object getFinish() {
+        return _finish;
+    }
+
+    public boolean isReversed() {
+        return _reversed;
+    }
+
+    public int getPageSize() {
+        return _pageSize;
+    }
+
+    @Override
+    public String toString() {
+        return "ColumnRange[" + _start + ", " + _finish + ( _reversed ? ", reversed" : "" ) + ", pageSize=" + _pageSize + "]";
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.cassandra.thrift.Column;
+
+import com.google.common.base.Function;
+
+/**
+ * Iterates over the columns of a single row one slice at a time, so wide rows are never held in
+ * memory at once. Every slice after the first starts at the last column of the previous one, which
+ * Cassandra returns again and is skipped.
+ */
+class ColumnSliceIterator<V> implements Iterator<V> {
+
+    interface SliceSource {
+        /**
+         * @return up to count columns in iteration order, starting with start inclusive
+         */
+        List<Column> fetch( byte[] start, int count );
+    }
+
+    private final SliceSource _source;
+    private final Function<Column, V> _converter;
+    private final int _pageSize;
+
+    private Iterator<Column> _page;
+    private byte[] _nextStart;
+    private byte[] _skipName;
+    private boolean _exhausted;
+    private V _next;
+    private boolean _hasNext;
+
+    ColumnSliceIterator( final SliceSource source, final byte[] start, final int pageSize,
+            final Function<Column, V> converter ) {
+        _source = source;
+        _converter = converter;
+        _pageSize = pageSize;
+        _nextStart = start;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while ( !_hasNext ) {
+            if ( _page != null && _page.hasNext() ) {
+                final Column column = _page.next();
+                if ( _skipName == null || !Arrays.equals( _skipName, column.getName() ) ) {
+                    _next = _converter.apply( column );
+                    _hasNext = true;
+                }
+            } else if ( !_exhausted ) {
+                nextPage();
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void nextPage() {
+        final boolean first = _skipName == null && _page == null;
+        final int requested = first ? _pageSize : _pageSize + 1;
+        final List<Column> page = _source.fetch( _nextStart, requested );
+
+        _skipName = first ? null : _nextStart;
+        if ( page.size() < requested ) {
+            _exhausted = true;
+        } else {
+            _nextStart = page.get( page.size() - 1 ).getName();
+        }
+        _page = page.iterator();
+    }
+
+    @Override
+    public V next() {
+        if ( !hasNext() ) {
+            throw new NoSuchElementException();
+        }
+        final V next = _next;
+        _next = null;
+        _hasNext = false;
+        return next;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm;
+
+import java.util.Map;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Maps the constants of one enum class. Stored values are decoded by looking up their raw bytes, so
+ * reads need neither reflection nor a String per value.
+ */
+final class EnumTypeMapping<E extends Enum<E>> implements TypeMapping<E> {
+
+    private static final byte ORDINAL_MARKER = 0;
+
+    private final Class<E> _type;
+    private final E[] _constants;
+    private final byte[][] _names;
+    private final BytesIndex<E> _byName;
+    private final EnumEncoding _encoding;
+
+    EnumTypeMapping( final Class<E> type, final EnumEncoding encoding, final TypeConverter typeConverter ) {
+        _type = type;
+        _encoding = encoding;
+        _constants = type.getEnumConstants();
+        _names = new byte[_constants.length][];
+
+        final Map<byte[], E> byName = Maps.newHashMap();
+        for ( final E constant : _constants ) {
+            _names[constant.ordinal()] = typeConverter.stringToBytes( constant.name() );
+            byName.put( _names[constant.ordinal()], constant );
+        }
+        _byName = new BytesIndex<E>( byName );
+    }
+
+    @Override
+    public byte[] toBytes( final Object value ) {
+        final int ordinal = _type.cast( value ).ordinal();
+        if ( _encoding == EnumEncoding.ORDINAL ) {
+            return ordinal < 0x100
+                ? new byte[] { ORDINAL_MARKER, (byte) ordinal }
+                : new byte[] { ORDINAL_MARKER, (byte) ( ordinal >>> 8 ), (byte) ordinal };
+        }
+        // the names are also the keys of the index, callers must not be able to change them
+        return _names[ordinal].clone();
+    }
+
+    @Override
+    public E fromBytes( final byte[] value ) {
+        if ( value == null || value.length == 0 ) {
+            return null;
+        }
+        if ( value[0] == ORDINAL_MARKER ) {
+            int ordinal = 0;
+            for ( int i = 1; i < value.length; i++ ) {
+                ordinal = ( ordinal << 8 ) | ( value[i] & 0xFF );
+            }
+            if ( value.length < 2 || value.length > 3 || ordinal >= _constants.length ) {
+                throw new HelenaRuntimeException( "Invalid ordinal value for enum " + _type.getName() );
+            }
+            return _constants[ordinal];
+        }
+        final E constant = _byName.get( value );
+        if ( constant == null ) {
+            throw new HelenaRuntimeException( "No enum constant " + _type.getName() + " matches the stored value" );
+        }
+        return constant;
+    }
+
+}
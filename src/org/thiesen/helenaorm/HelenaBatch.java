@@ -0,0 +1,100 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm;
+
+import java.util.List;
+
+import me.prettyprint.cassandra.service.BatchMutation;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Collects insertions of many objects, possibly into different rows, and sends them to
+ * Cassandra as a single batch_mutate call. The batch flushes itself whenever it holds
+ * the maximum number of objects it was created with.
+ *
+ * Instances are not thread safe, get one per unit of work from {@link HelenaDAO#newBatch()}.
+ */
+public class HelenaBatch<T> {
+
+    private final HelenaDAO<T> _dao;
+    private final int _maxSize;
+
+    private BatchMutation _mutation = new BatchMutation();
+    private final List<String> _keys = Lists.newArrayList();
+
+    HelenaBatch( final HelenaDAO<T> dao, final int maxSize ) {
+        _dao = dao;
+        _maxSize = maxSize;
+    }
+
+    public HelenaBatch<T> insert( final T object ) {
+        return insert( object, _dao.nextTimestamp() );
+    }
+
+    public HelenaBatch<T> insert( final T object, final long timestamp ) {
+        _keys.add( _dao.addInsertion( _mutation, object, timestamp ) );
+        if ( _keys.size() >= _maxSize ) {
+            flush();
+        }
+        return this;
+    }
+
+    public HelenaBatch<T> insertAll( final Iterable<? extends T> objects ) {
+        for ( final T object : objects ) {
+            insert( object );
+        }
+        return this;
+    }
+
+    public HelenaBatch<T> insertAll( final Iterable<? extends T> objects, final long timestamp ) {
+        for ( final T object : objects ) {
+            insert( object, timestamp );
+        }
+        return this;
+    }
+
+    /**
+     * Sends all pending insertions. Does nothing if the batch is empty. If sending fails the
+     * insertions stay pending, so the flush can be retried.
+     */
+    public void flush() {
+        if ( _keys.isEmpty() ) {
+            return;
+        }
+        _dao.batchMutate( _mutation, _keys );
+        _mutation = new BatchMutation();
+        _keys.clear();
+    }
+
+    /**
+     * @return the number of objects waiting for the next flush
+     */
+    public int size() {
+        return _keys.size();
+    }
+
+}
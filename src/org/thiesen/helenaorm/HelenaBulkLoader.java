@@ -0,0 +1,390 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.cassandra.thrift.Column;
+import org.apache.cassandra.utils.FBUtilities;
+
+/**
+ * Writes objects into a file that json2sstable turns into an SSTable of the DAO's column family, for
+ * backfills that would take too long through the online write path.
+ *
+ * Added objects are marshalled on several threads. Each thread sorts its columns in memory and spills
+ * them into a temporary run file whenever they exceed its share of the memory limit. {@link #finish()}
+ * merges the runs into the output, with the rows in the token order of the RandomPartitioner and the
+ * columns of each row sorted by name. If an object is added twice the one added last wins. All columns
+ * get the timestamp the loader was created with.
+ *
+ * Instances are not thread safe, get one per load from {@link HelenaDAO#newBulkLoader(File)} and
+ * always call {@link #finish()}, it also stops the threads and removes the run files of failed loads.
+ */
+public class HelenaBulkLoader<T> {
+
+    private static final int CHUNK_SIZE = 1000;
+
+    private final HelenaDAO<T> _dao;
+    private final File _output;
+    private final File _tempDirectory;
+    private final long _maxRunBytes;
+    private final long _timestamp;
+
+    private final BlockingQueue<Chunk<T>> _chunks;
+    private final List<Thread> _workers = new ArrayList<Thread>();
+    private final List<File> _runs = Collections.synchronizedList( new ArrayList<File>() );
+    private volatile Throwable _failure;
+
+    private List<T> _chunk = new ArrayList<T>( CHUNK_SIZE );
+    private long _added;
+    private boolean _finished;
+
+    HelenaBulkLoader( final HelenaDAO<T> dao, final File output, final File tempDirectory, final int threads,
+            final long maxMemoryBytes, final long timestamp ) {
+        if ( threads < 1 ) {
+            throw new IllegalArgumentException( "Thread count must be positive, was " + threads );
+        }
+        if ( maxMemoryBytes < threads ) {
+            throw new IllegalArgumentException( "Memory limit is too small for " + threads + " threads: " + maxMemoryBytes );
+        }
+        _dao = dao;
+        _output = output;
+        _tempDirectory = tempDirectory;
+        _maxRunBytes = maxMemoryBytes / threads;
+        _timestamp = timestamp;
+        _chunks = new ArrayBlockingQueue<Chunk<T>>( 2 * threads );
+
+        final DaemonThreadFactory threadFactory = new DaemonThreadFactory( "helena-bulk" );
+        for ( int i = 0; i < threads; i++ ) {
+            final Thread worker = threadFactory.newThread( new Marshaller() );
+            _workers.add( worker );
+            worker.start();
+        }
+    }
+
+    public HelenaBulkLoader<T> add( final T object ) {
+        checkState();
+        _chunk.add( object );
+        if ( _chunk.size() >= CHUNK_SIZE ) {
+            submitChunk();
+        }
+        return this;
+    }
+
+    public HelenaBulkLoader<T> addAll( final Iterable<? extends T> objects ) {
+        for ( final T object : objects ) {
+            add( object );
+        }
+        return this;
+    }
+
+    /**
+     * Waits for all objects to be marshalled and writes the output file. The temporary run files are
+     * removed afterwards, also if the load failed.
+     *
+     * @return the number of rows written
+     */
+    public long finish() {
+        if ( _finished ) {
+            throw new IllegalStateException( "The bulk load has already been finished" );
+        }
+        _finished = true;
+        try {
+            submitChunk();
+            for ( int i = 0; i < _workers.size(); i++ ) {
+                put( new Chunk<T>( _added, Collections.<T>emptyList() ) );
+            }
+            for ( final Thread worker : _workers ) {
+                worker.join();
+            }
+            if ( _failure != null ) {
+                throw new HelenaRuntimeException( "Bulk load failed", _failure );
+            }
+            return merge();
+        } catch ( final InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new HelenaRuntimeException( "Interrupted while finishing the bulk load", e );
+        } catch ( final IOException e ) {
+            throw new HelenaRuntimeException( "Could not write " + _output, e );
+        } finally {
+            for ( final Thread worker : _workers ) {
+                worker.interrupt();
+            }
+            for ( final File run : _runs ) {
+                run.delete();
+            }
+        }
+    }
+
+    /**
+     * @return the number of objects added so far
+     */
+    public long size() {
+        return _added + _chunk.size();
+    }
+
+    private void checkState() {
+        if ( _finished ) {
+            throw new IllegalStateException( "The bulk load has already been finished" );
+        }
+        if ( _failure != null ) {
+            throw new HelenaRuntimeException( "Bulk load failed", _failure );
+        }
+    }
+
+    private void submitChunk() {
+        if ( _chunk.isEmpty() ) {
+            return;
+        }
+        put( new Chunk<T>( _added, _chunk ) );
+        _added += _chunk.size();
+        _chunk = new ArrayList<T>( CHUNK_SIZE );
+    }
+
+    private void put( final Chunk<T> chunk ) {
+        try {
+            _chunks.put( chunk );
+        } catch ( final InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new HelenaRuntimeException( "Interrupted while adding to the bulk load", e );
+        }
+    }
+
+    /**
+     * Consecutive objects, numbered in the order they were added. A chunk without objects tells a
+     * marshaller to stop.
+     */
+    private static final class Chunk<T> {
+
+        private final long _firstSequence;
+        private final List<T> _objects;
+
+        Chunk( final long firstSequence, final List<T> objects ) {
+            _firstSequence = firstSequence;
+            _objects = objects;
+        }
+
+        boolean isEnd() {
+            return _objects.isEmpty();
+        }
+
+    }
+
+    private class Marshaller implements Runnable {
+
+        private final MarshalledObject _buffer = _dao.newMarshalledObject();
+        private final List<BulkEntry> _entries = new ArrayList<BulkEntry>();
+        private long _bytes;
+
+        @Override
+        public void run() {
+            try {
+                for ( Chunk<T> chunk = _chunks.take(); !chunk.isEnd(); chunk = _chunks.take() ) {
+                    if ( _failure != null ) {
+                        continue;
+                    }
+                    long sequence = chunk._firstSequence;
+                    for ( final T object : chunk._objects ) {
+                        add( _dao.marshal( object, _buffer ), sequence++ );
+                    }
+                }
+                spill();
+            } catch ( final InterruptedException e ) {
+                _failure = e;
+            } catch ( final Throwable e ) {
+                _failure = e;
+                drain();
+            }
+        }
+
+        /**
+         * Keeps taking chunks after a failure so the loader thread does not block on a full queue.
+         */
+        private void drain() {
+            try {
+                while ( !_chunks.take().isEnd() ) {
+                    // discard
+                }
+            } catch ( final InterruptedException e ) {
+                // the loader gave up waiting
+            }
+        }
+
+        private void add( final MarshalledObject marshalledObject, final long sequence ) throws IOException {
+            final String key = marshalledObject.getKey();
+            final BigInteger token = TokenRanges.tokenValueOf( key );
+            for ( final Column column : _dao.toColumns( marshalledObject, _timestamp ) ) {
+                final BulkEntry entry = new BulkEntry( token, key, column.getName(), column.getValue(),
+                        column.getTimestamp(), sequence );
+                _entries.add( entry );
+                _bytes += entry.estimateSize();
+            }
+            if ( _bytes >= _maxRunBytes ) {
+                spill();
+            }
+        }
+
+        private void spill() throws IOException {
+            if ( _entries.isEmpty() ) {
+                return;
+            }
+            Collections.sort( _entries );
+            final File run = File.createTempFile( "helena-bulk", ".run", _tempDirectory );
+            _runs.add( run );
+            final DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( run ), 1 << 16 ) );
+            try {
+                for ( final BulkEntry entry : _entries ) {
+                    entry.writeTo( out );
+                }
+            } finally {
+                out.close();
+            }
+            _entries.clear();
+            _bytes = 0;
+        }
+
+    }
+
+    private long merge() throws IOException {
+        final PriorityQueue<RunReader> readers = new PriorityQueue<RunReader>();
+        final Writer out = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( _output ), "UTF-8" ), 1 << 16 );
+        try {
+            for ( final File run : _runs ) {
+                final RunReader reader = new RunReader( run );
+                if ( reader.advance() ) {
+                    readers.add( reader );
+                } else {
+                    reader.close();
+                }
+            }
+
+            long rows = 0;
+            BulkEntry previous = null;
+            out.write( '{' );
+            while ( !readers.isEmpty() ) {
+                final RunReader reader = readers.poll();
+                final BulkEntry entry = reader.getCurrent();
+                if ( reader.advance() ) {
+                    readers.add( reader );
+                } else {
+                    reader.close();
+                }
+
+                if ( entry.isSameColumn( previous ) ) {
+                    continue;
+                }
+                if ( previous == null || !previous.getKey().equals( entry.getKey() ) ) {
+                    out.write( previous == null ? "\n" : "],\n" );
+                    writeString( out, entry.getKey() );
+                    out.write( ": [" );
+                    rows++;
+                } else {
+                    out.write( ", " );
+                }
+                out.write( "[\"" );
+                out.write( FBUtilities.bytesToHex( entry.getName() ) );
+                out.write( "\", \"" );
+                out.write( FBUtilities.bytesToHex( entry.getValue() ) );
+                out.write( "\", " );
+                out.write( Long.toString( entry.getTimestamp() ) );
+                out.write( ", false]" );
+                previous = entry;
+            }
+            out.write( previous == null ? "}\n" : "]\n}\n" );
+            return rows;
+        } finally {
+            for ( final RunReader reader : readers ) {
+                reader.close();
+            }
+            out.close();
+        }
+    }
+
+    private static void writeString( final Writer out, final String string ) throws IOException {
+        out.write( '"' );
+        for ( int i = 0; i < string.length(); i++ ) {
+            final char c = string.charAt( i );
+            if ( c == '"' || c == '\\' ) {
+                out.write( '\\' );
+                out.write( c );
+            } else if ( c < 0x20 ) {
+                out.write( String.format( "\\u%04x", Integer.valueOf( c ) ) );
+            } else {
+                out.write( c );
+            }
+        }
+        out.write( '"' );
+    }
+
+    private static final class RunReader implements Comparable<RunReader>, Closeable {
+
+        private final DataInputStream _in;
+        private BulkEntry _current;
+
+        RunReader( final File run ) throws IOException {
+            _in = new DataInputStream( new BufferedInputStream( new FileInputStream( run ), 1 << 16 ) );
+        }
+
+        boolean advance() throws IOException {
+            _current = BulkEntry.readFrom( _in );
+            return _current != null;
+        }
+
+        BulkEntry getCurrent() {
+            return _current;
+        }
+
+        @Override
+        public int compareTo( final RunReader other ) {
+            return _current.compareTo( other._current );
+        }
+
+        @Override
+        public void close() throws IOException {
+            _in.close();
+        }
+
+    }
+
+}
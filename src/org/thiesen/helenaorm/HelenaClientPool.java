@@ -0,0 +1,103 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm;
+
+import java.util.Set;
+
+import me.prettyprint.cassandra.dao.Command;
+import me.prettyprint.cassandra.service.CassandraClientPool;
+import me.prettyprint.cassandra.service.CassandraClientPoolFactory;
+
+import org.apache.cassandra.thrift.ConsistencyLevel;
+
+/**
+ * A long lived pool of Cassandra connections. DAOs borrow a client and its keyspace from
+ * the pool for each command and return it afterwards, so steady state calls reuse open
+ * connections and already described keyspaces.
+ */
+public class HelenaClientPool {
+
+    private final CassandraClientPool _pool;
+    private final String[] _hosts;
+
+    HelenaClientPool( final CassandraClientPool pool, final String[] hosts ) {
+        _pool = pool;
+        _hosts = hosts.clone();
+    }
+
+    /**
+     * @param hosts the nodes to connect to, as host:port
+     */
+    static HelenaClientPool create( final String[] hosts, final ClientPoolConfig config ) {
+        return new HelenaClientPool( CassandraClientPoolFactory.INSTANCE.createNew( config.toConfigurator( hosts ) ), hosts );
+    }
+
+    /**
+     * @return a pool backed by Hector's process wide default pool
+     */
+    static HelenaClientPool createShared( final String[] hosts ) {
+        return new HelenaClientPool( CassandraClientPoolFactory.INSTANCE.get(), hosts );
+    }
+
+    static String[] toHosts( final String hostname, final int port ) {
+        return new String[] { hostname + ":" + port };
+    }
+
+    <V> V execute( final Command<V> command, final String keyspace, final ConsistencyLevel consistencyLevel ) throws Exception {
+        return command.execute( _pool, _hosts, keyspace, consistencyLevel );
+    }
+
+    public int getNumActive() {
+        return _pool.getNumActive();
+    }
+
+    public int getNumIdle() {
+        return _pool.getNumIdle();
+    }
+
+    public int getNumBlockedThreads() {
+        return _pool.getNumBlockedThreads();
+    }
+
+    public int getNumPools() {
+        return _pool.getNumPools();
+    }
+
+    public int getNumExhaustedPools() {
+        return _pool.getNumExhaustedPools();
+    }
+
+    public Set<String> getExhaustedPoolNames() {
+        return _pool.getExhaustedPoolNames();
+    }
+
+    @Override
+    public String toString() {
+        return "HelenaClientPool [active=" + getNumActive() + ", idle=" + getNumIdle() + ", blocked=" + getNumBlockedThreads()
+                + ", pools=" + getNumPools() + ", exhausted=" + getNumExhaustedPools() + "]";
+    }
+
+}
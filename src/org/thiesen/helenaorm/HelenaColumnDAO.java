@@ -30,19 +30,25 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Future;
 
 import me.prettyprint.cassandra.dao.Command;
 import me.prettyprint.cassandra.model.HectorException;
+import me.prettyprint.cassandra.service.BatchMutation;
 import me.prettyprint.cassandra.service.CassandraClient;
 import me.prettyprint.cassandra.service.Keyspace;
 
 import org.apache.cassandra.thrift.Column;
 import org.apache.cassandra.thrift.ColumnParent;
-import org.apache.cassandra.thrift.ColumnPath;
 import org.apache.cassandra.thrift.ConsistencyLevel;
+import org.apache.cassandra.thrift.Deletion;
 import org.apache.cassandra.thrift.SlicePredicate;
 import org.apache.cassandra.thrift.SliceRange;
 import org.apache.commons.beanutils.PropertyUtils;
@@ -51,25 +57,38 @@ import org.thiesen.helenaorm.annotations.HelenaColumnBean;
 import org.thiesen.helenaorm.annotations.KeyProperty;
 import org.thiesen.helenaorm.annotations.ValueProperty;
 
+import com.google.common.base.Function;
+import com.google.common.base.Functions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
 public class HelenaColumnDAO<T> {
 
-//	private final Class<T> clz;
+	private static final int DEFAULT_MAX_BATCH_SIZE = 100;
+	private static final int DEFAULT_MAX_IN_FLIGHT = 2;
+	private static final int DEFAULT_QUEUE_CAPACITY = 1000;
+
+	private final Class<T> clz;
 	private final TypeConverter typeConverter;
+	private final TimestampProvider timestampProvider;
 
 	private final PropertyDescriptor[] propertyDescriptors;
 	private Map<String, Field> fields;
 
-	private final String hostname;
-	private final int port;
-	private String[] nodes = null;
+	private final HelenaClientPool clientPool;
 
 	private final String keyspace;
 	private final String columnFamily;
 	private final String secondaryColumnFamily;
+	private final HelenaMetrics metrics;
 
 	private ConsistencyLevel consistencyLevel = CassandraClient.DEFAULT_CONSISTENCY_LEVEL;
+	private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+	private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+	private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+	private QueueFullPolicy queueFullPolicy = QueueFullPolicy.BLOCK;
+	private AsyncWriter asyncWriter;
 
 	private PropertyDescriptor keyPropertyDescriptor;
 	private PropertyDescriptor columnPropertyDescriptor;
@@ -79,6 +98,21 @@ public class HelenaColumnDAO<T> {
 			final int port, final SerializeUnknownClasses serializationPolicy,
 			final ImmutableMap<Class<?>, TypeMapping<?>> typeMappings) {
 
+		this(clz, HelenaClientPool.createShared(HelenaClientPool.toHosts(hostname, port)),
+				new TypeConverter(typeMappings, serializationPolicy), MicrosecondTimestampProvider.getInstance());
+	}
+
+	public HelenaColumnDAO(final Class<T> clz, final String[] nodes,
+			final SerializeUnknownClasses serializationPolicy,
+			final ImmutableMap<Class<?>, TypeMapping<?>> typeMappings) {
+
+		this(clz, HelenaClientPool.createShared(nodes), new TypeConverter(typeMappings, serializationPolicy),
+				MicrosecondTimestampProvider.getInstance());
+	}
+
+	HelenaColumnDAO(final Class<T> clz, final HelenaClientPool clientPool,
+			final TypeConverter typeConverter, final TimestampProvider timestampProvider) {
+
 		if (!clz.isAnnotationPresent(HelenaColumnBean.class)) {
 			throw new IllegalArgumentException(
 					"Trying to get a HelenaColumnDAO for a class that is not mapped with @HelenaColumnBean");
@@ -86,15 +120,16 @@ public class HelenaColumnDAO<T> {
 
 		final HelenaColumnBean annotation = clz
 				.getAnnotation(HelenaColumnBean.class);
-		this.typeConverter = new TypeConverter(typeMappings, serializationPolicy);
-//		this.clz = clz;
+		this.typeConverter = typeConverter;
+		this.timestampProvider = timestampProvider;
+		this.clz = clz;
 
 		this.keyspace = annotation.keyspace();
 		this.columnFamily = annotation.columnFamily();
 		this.secondaryColumnFamily = annotation.secondaryColumnFamily();
+		this.metrics = HelenaMetrics.forColumnFamily(keyspace, columnFamily);
 
-		this.hostname = hostname;
-		this.port = port;
+		this.clientPool = clientPool;
 
 		if (annotation.consistency() != null) {
 			this.setConsistencyLevel(annotation.consistency());
@@ -127,92 +162,285 @@ public class HelenaColumnDAO<T> {
 		}
 	}
 
-	public HelenaColumnDAO(final Class<T> clz, final String[] nodes,
-			final SerializeUnknownClasses serializationPolicy,
-			final ImmutableMap<Class<?>, TypeMapping<?>> typeMappings) {
+	public void insert(final T object) {
+		insert(object, timestampProvider.nextTimestamp());
+	}
 
-		this(clz, null, 0, serializationPolicy, typeMappings);
-		this.nodes = nodes;
+	/**
+	 * Inserts the object with an explicit column timestamp. The column and its
+	 * reverse entry in the secondary column family are written with a single
+	 * batch mutation.
+	 */
+	public void insert(final T object, final long timestamp) {
+		write(object, timestamp, true);
 	}
 
-	public void insert(final T object) {
+	public void delete(final T object) {
+		delete(object, timestampProvider.nextTimestamp());
+	}
+
+	/**
+	 * Deletes the object's column and its reverse entry in the secondary
+	 * column family with a single batch mutation and an explicit timestamp.
+	 */
+	public void delete(final T object, final long timestamp) {
+		write(object, timestamp, false);
+	}
+
+	private void write(final T object, final long timestamp, final boolean insert) {
+		final MetricsCall call = metrics.start(insert ? Operation.INSERT : Operation.DELETE);
 		try {
-			final String keyName = keyPropertyDescriptor.getName();
-			final Object keyValue = PropertyUtils.getProperty(object, keyName);
-			final byte[] keyBytes = typeConverter.convertValueObjectToByteArray(keyValue);
-
-			final String columnName = columnPropertyDescriptor.getName();
-			final Object columnValue = PropertyUtils.getProperty(object, columnName);
-			final byte[] columnBytes = typeConverter.convertValueObjectToByteArray(columnValue);
-
-			byte[] tempValue = null;
-			if (valuePropertyDescriptor != null) {
-				final String valueName = valuePropertyDescriptor.getName();
-				final Object valueValue = PropertyUtils.getProperty(object, valueName);
-				tempValue = typeConverter.convertValueObjectToByteArray(valueValue);
-			} else {
-				final long timestamp = System.currentTimeMillis();
-				tempValue = typeConverter.convertValueObjectToByteArray(timestamp);
+			final BatchMutation mutation = new BatchMutation();
+			prepare(object, timestamp, insert).addTo(mutation);
+			call.addRows(1);
+			batchMutate(mutation);
+		} catch (final RuntimeException e) {
+			call.failed();
+			throw e;
+		} finally {
+			call.end();
+		}
+	}
+
+	public void insertAll(final Iterable<? extends T> objects) {
+		insertAll(objects, timestampProvider.nextTimestamp());
+	}
+
+	/**
+	 * Inserts all objects with as few batch mutations as the maximum batch
+	 * size allows, each carrying the writes of up to that many objects to
+	 * both column families.
+	 */
+	public void insertAll(final Iterable<? extends T> objects, final long timestamp) {
+		writeAll(objects, timestamp, true);
+	}
+
+	public void deleteAll(final Iterable<? extends T> objects) {
+		deleteAll(objects, timestampProvider.nextTimestamp());
+	}
+
+	/**
+	 * Deletes the columns of all objects, see {@link #insertAll(Iterable, long)}.
+	 */
+	public void deleteAll(final Iterable<? extends T> objects, final long timestamp) {
+		writeAll(objects, timestamp, false);
+	}
+
+	private void writeAll(final Iterable<? extends T> objects, final long timestamp, final boolean insert) {
+		BatchMutation mutation = new BatchMutation();
+		int size = 0;
+		for (final T object : objects) {
+			prepare(object, timestamp, insert).addTo(mutation);
+			if (++size >= maxBatchSize) {
+				batchMutate(mutation);
+				mutation = new BatchMutation();
+				size = 0;
 			}
-			final byte[] value = tempValue;
+		}
+		if (size > 0) {
+			batchMutate(mutation);
+		}
+	}
 
-			execute(new Command<Void>() {
-				@Override
-				public Void execute(final Keyspace ks) throws HectorException {
-					
-					ColumnPath columnPath = new ColumnPath();
-					columnPath.setColumn_family(columnFamily);
-					columnPath.setColumn(columnBytes);
-					ks.insert(keyValue.toString(), columnPath, value);
-					
-					if (secondaryColumnFamily != null && !secondaryColumnFamily.isEmpty()) {
-						columnPath = new ColumnPath();
-						columnPath.setColumn_family(secondaryColumnFamily);
-						columnPath.setColumn(keyBytes);
-						ks.insert(columnValue.toString(), columnPath, value);
-					}
-					
-					return null;
-				}
-			});
+	private AsyncWriter.Write prepare(final T object, final long timestamp, final boolean insert) {
+		try {
+			return insert ? prepareInsertion(object, timestamp) : prepareDeletion(object, timestamp);
+		} catch (final HelenaRuntimeException e) {
+			throw e;
+		} catch (final Exception e) {
+			throw new HelenaRuntimeException(e);
+		}
+	}
 
+	/**
+	 * Queues the insertion of the object into the column family and, if
+	 * configured, the secondary column family. Queued writes are coalesced
+	 * into batch mutations by a background writer.
+	 * 
+	 * @return a future that completes once Cassandra acknowledged the write
+	 */
+	public Future<Void> insertAsync(final T object) {
+		return insertAsync(object, timestampProvider.nextTimestamp());
+	}
+
+	public Future<Void> insertAsync(final T object, final long timestamp) {
+		try {
+			return submitAsync(prepareInsertion(object, timestamp));
+		} catch (final HelenaRuntimeException e) {
+			throw e;
 		} catch (final Exception e) {
 			throw new HelenaRuntimeException(e);
 		}
 	}
 
-	public void delete(final T object) {
+	/**
+	 * Queues the deletion of the object's column, see {@link #insertAsync(Object)}.
+	 */
+	public Future<Void> deleteAsync(final T object) {
+		return deleteAsync(object, timestampProvider.nextTimestamp());
+	}
+
+	public Future<Void> deleteAsync(final T object, final long timestamp) {
 		try {
-			final String keyName = keyPropertyDescriptor.getName();
-			final Object keyValue = PropertyUtils.getProperty(object, keyName);
-			final byte[] keyBytes = typeConverter.convertValueObjectToByteArray(keyValue);
+			return submitAsync(prepareDeletion(object, timestamp));
+		} catch (final HelenaRuntimeException e) {
+			throw e;
+		} catch (final Exception e) {
+			throw new HelenaRuntimeException(e);
+		}
+	}
+
+	/**
+	 * Blocks until all asynchronous writes issued before this call have been sent.
+	 */
+	public void flush() {
+		final AsyncWriter writer;
+		synchronized (this) {
+			writer = this.asyncWriter;
+		}
+		if (writer != null) {
+			writer.flush();
+		}
+	}
+
+	/**
+	 * Configures the asynchronous write path. Must be called before the first
+	 * asynchronous write.
+	 * 
+	 * @param maxInFlight the number of batch mutations that may be sent concurrently
+	 * @param queueCapacity the number of writes that may be queued before the queue full policy applies
+	 * @param queueFullPolicy whether callers block or fail when the queue is full
+	 */
+	public synchronized void configureAsyncWrites(final int maxInFlight,
+			final int queueCapacity, final QueueFullPolicy queueFullPolicy) {
+		if (this.asyncWriter != null) {
+			throw new IllegalStateException("Asynchronous writes are already running");
+		}
+		this.maxInFlight = maxInFlight;
+		this.queueCapacity = queueCapacity;
+		this.queueFullPolicy = queueFullPolicy;
+	}
+
+	/**
+	 * Sends all queued writes and waits until they have been acknowledged or
+	 * failed, then stops the background writers.
+	 */
+	public synchronized void shutdownAsyncWrites() {
+		if (this.asyncWriter != null) {
+			this.asyncWriter.shutdown();
+			this.asyncWriter = null;
+		}
+	}
+
+	/**
+	 * Queues the write with the current writer. A writer that was shut down
+	 * after it was handed out is replaced by a new one, as if the write had
+	 * been issued after the shutdown.
+	 */
+	private Future<Void> submitAsync(final AsyncWriter.Write write) {
+		while (true) {
+			final Future<Void> future = asyncWriter().trySubmit(write);
+			if (future != null) {
+				return future;
+			}
+		}
+	}
+
+	private synchronized AsyncWriter asyncWriter() {
+		if (this.asyncWriter == null) {
+			this.asyncWriter = new AsyncWriter(columnFamily, new AsyncWriter.Sink() {
+				@Override
+				public void batchMutate(final BatchMutation mutation, final List<AsyncWriter.Write> writes) {
+					HelenaColumnDAO.this.batchMutate(mutation);
+				}
+			}, maxInFlight, queueCapacity, maxBatchSize, queueFullPolicy);
+		}
+		return this.asyncWriter;
+	}
+
+	private AsyncWriter.Write prepareInsertion(final T object, final long timestamp) throws Exception {
+		final Object keyValue = PropertyUtils.getProperty(object, keyPropertyDescriptor.getName());
+		final byte[] keyBytes = typeConverter.convertValueObjectToByteArray(keyValue);
+
+		final Object columnValue = PropertyUtils.getProperty(object, columnPropertyDescriptor.getName());
+		final byte[] columnBytes = typeConverter.convertValueObjectToByteArray(columnValue);
+
+		final byte[] value;
+		if (valuePropertyDescriptor != null) {
+			final Object valueValue = PropertyUtils.getProperty(object, valuePropertyDescriptor.getName());
+			value = typeConverter.convertValueObjectToByteArray(valueValue);
+		} else {
+			value = typeConverter.convertValueObjectToByteArray(System.currentTimeMillis());
+		}
+
+		final String key = keyValue.toString();
+		final String secondaryKey = columnValue.toString();
+
+		return new AsyncWriter.Write() {
+			@Override
+			public void addTo(final BatchMutation mutation) {
+				final Column column = new Column(columnBytes, value, timestamp);
+				mutation.addInsertion(key, ImmutableList.of(columnFamily), column);
+				MetricsCall.current().addColumns(ImmutableList.of(column));
+				if (hasSecondaryColumnFamily()) {
+					final Column reverse = new Column(keyBytes, value, timestamp);
+					mutation.addInsertion(secondaryKey, ImmutableList.of(secondaryColumnFamily), reverse);
+					MetricsCall.current().addColumns(ImmutableList.of(reverse));
+				}
+			}
+		};
+	}
+
+	private AsyncWriter.Write prepareDeletion(final T object, final long timestamp) throws Exception {
+		final Object keyValue = PropertyUtils.getProperty(object, keyPropertyDescriptor.getName());
+		final byte[] keyBytes = typeConverter.convertValueObjectToByteArray(keyValue);
+
+		final Object columnValue = PropertyUtils.getProperty(object, columnPropertyDescriptor.getName());
+		final byte[] columnBytes = typeConverter.convertValueObjectToByteArray(columnValue);
+
+		final String key = keyValue.toString();
+		final String secondaryKey = columnValue.toString();
+
+		return new AsyncWriter.Write() {
+			@Override
+			public void addTo(final BatchMutation mutation) {
+				mutation.addDeletion(key, ImmutableList.of(columnFamily),
+						makeColumnDeletion(columnBytes, timestamp));
+				if (hasSecondaryColumnFamily()) {
+					mutation.addDeletion(secondaryKey, ImmutableList.of(secondaryColumnFamily),
+							makeColumnDeletion(keyBytes, timestamp));
+				}
+			}
+		};
+	}
 
-			final String columnName = columnPropertyDescriptor.getName();
-			final Object columnValue = PropertyUtils.getProperty(object, columnName);
-			final byte[] columnBytes = typeConverter.convertValueObjectToByteArray(columnValue);
+	private Deletion makeColumnDeletion(final byte[] column, final long timestamp) {
+		final SlicePredicate predicate = new SlicePredicate();
+		predicate.setColumn_names(ImmutableList.of(column));
+		final Deletion deletion = new Deletion(timestamp);
+		deletion.setPredicate(predicate);
+		return deletion;
+	}
+
+	private boolean hasSecondaryColumnFamily() {
+		return secondaryColumnFamily != null && !secondaryColumnFamily.isEmpty();
+	}
 
+	void batchMutate(final BatchMutation mutation) {
+		final MetricsCall call = metrics.start(Operation.BATCH_MUTATE);
+		try {
 			execute(new Command<Void>() {
 				@Override
 				public Void execute(final Keyspace ks) throws HectorException {
-					
-					ColumnPath columnPath = new ColumnPath();
-					columnPath.setColumn_family(columnFamily);
-					columnPath.setColumn(columnBytes);
-					ks.remove(keyValue.toString(), columnPath);
-					
-					if (secondaryColumnFamily != null && !secondaryColumnFamily.isEmpty()) {
-						columnPath = new ColumnPath();
-						columnPath.setColumn_family(secondaryColumnFamily);
-						columnPath.setColumn(keyBytes);
-						ks.remove(columnValue.toString(), columnPath);
-					}
-					
+					ks.batchMutate(mutation);
 					return null;
 				}
 			});
-
 		} catch (final Exception e) {
+			call.failed();
 			throw new HelenaRuntimeException(e);
+		} finally {
+			call.end();
 		}
 	}
 
@@ -250,113 +478,268 @@ public class HelenaColumnDAO<T> {
 		return (field != null && field.isAnnotationPresent(annotation));
 	}
 
+	/**
+	 * @return the names of all columns in the row, read one page at a time
+	 */
 	public List<String> getColumns(final String key) {
-		final List<String> result = new ArrayList<String>();
+		return drain(sliceIterator(key, columnFamily, ColumnRange.all(), nameAsString()));
+	}
+
+	/**
+	 * @return the names of all columns in the row of the secondary column family
+	 */
+	public List<String> getColumnsBySecondary(final String key) {
+		return drain(sliceIterator(key, secondaryColumnFamily, ColumnRange.all(), nameAsString()));
+	}
+
+	/**
+	 * @return the values of all columns in the row, read one page at a time
+	 */
+	public List<String> getValues(final String key) {
+		return drain(sliceIterator(key, columnFamily, ColumnRange.all(), new Function<Column, String>() {
+			@Override
+			public String apply(final Column column) {
+				return typeConverter.bytesToString(column.getValue());
+			}
+		}));
+	}
+
+	/**
+	 * Iterates over the @ColumnProperty values stored in the row. Columns are
+	 * read lazily in pages of the range's page size.
+	 */
+	public <C> Iterator<C> iterateColumns(final String key, final ColumnRange range, final Class<C> columnType) {
+		return sliceIterator(key, columnFamily, range,
+				name(columnType, columnPropertyDescriptor.getPropertyType()));
+	}
+
+	/**
+	 * Iterates over the @KeyProperty values stored in the row of the secondary
+	 * column family, the range bounds are keys.
+	 */
+	public <C> Iterator<C> iterateColumnsBySecondary(final String key, final ColumnRange range, final Class<C> keyType) {
+		if (!hasSecondaryColumnFamily()) {
+			throw new IllegalStateException("No secondary column family is configured");
+		}
+		return sliceIterator(key, secondaryColumnFamily, range,
+				name(keyType, keyPropertyDescriptor.getPropertyType()));
+	}
+
+	/**
+	 * Iterates over the @ValueProperty values stored in the row, in the order
+	 * of their columns. Without a @ValueProperty the stored values are the
+	 * Long write times.
+	 */
+	public <C> Iterator<C> iterateValues(final String key, final ColumnRange range, final Class<C> valueType) {
+		final Class<?> propertyType = valuePropertyDescriptor != null ? valuePropertyDescriptor.getPropertyType() : Long.class;
+		checkAssignable(valueType, propertyType);
+		return sliceIterator(key, columnFamily, range, new Function<Column, C>() {
+			@Override
+			public C apply(final Column column) {
+				return valueType.cast(typeConverter.convertByteArrayToValueObject(propertyType, column.getValue()));
+			}
+		});
+	}
+
+	/**
+	 * @return all entries of the row as beans, names and values are decoded
+	 * from the same slice
+	 */
+	public List<T> getEntries(final String key) {
+		return drain(iterateEntries(key, ColumnRange.all()));
+	}
+
+	/**
+	 * Iterates over the entries of the row as beans with key, column and value
+	 * set, reading one page of the range at a time.
+	 */
+	public Iterator<T> iterateEntries(final String key, final ColumnRange range) {
+		return sliceIterator(key, columnFamily, range, entryConverter(key));
+	}
+
+	/**
+	 * Reads the entries of many rows with one multiget. Rows wider than the
+	 * default page size are completed with paged slices of their own.
+	 *
+	 * @return the entries of every key in the order of the keys, rows without
+	 * columns map to an empty list
+	 */
+	public Map<String, List<T>> getEntries(final Iterable<String> keys) {
+		final MetricsCall call = metrics.start(Operation.MULTIGET);
 		try {
-			execute(new Command<Void>() {
+			return getEntries(keys, call);
+		} catch (final RuntimeException e) {
+			call.failed();
+			throw e;
+		} finally {
+			call.end();
+		}
+	}
+
+	private Map<String, List<T>> getEntries(final Iterable<String> keys, final MetricsCall call) {
+		final List<String> keyList = ImmutableList.copyOf(keys);
+		call.addKeys(keyList.size());
+		final int pageSize = ColumnRange.DEFAULT_PAGE_SIZE;
+		final Map<String, List<Column>> rows;
+		try {
+			rows = execute(new Command<Map<String, List<Column>>>() {
 				@Override
-				public Void execute(final Keyspace ks) throws HectorException {
-					
-					SlicePredicate predicate = new SlicePredicate();
-					SliceRange sliceRange = new SliceRange();
-			        sliceRange.setStart(new byte[] {});
-			        sliceRange.setFinish(new byte[] {});
-			        predicate.setSlice_range(sliceRange);
-			        
-					List<Column> list = ks.getSlice(
-							key, new ColumnParent(columnFamily), predicate);
-					
-					if (list != null && !list.isEmpty()) {
-						String name = null;
-						for (Column column : list) {
-							name = typeConverter.bytesToString(column.getName());
-							result.add(name);
-						}
-					}
-					return null;
+				public Map<String, List<Column>> execute(final Keyspace ks) throws HectorException {
+					final SlicePredicate predicate = new SlicePredicate();
+					predicate.setSlice_range(new SliceRange(new byte[0], new byte[0], false, pageSize));
+					return ks.multigetSlice(keyList, new ColumnParent(columnFamily), predicate);
 				}
 			});
 		} catch (final Exception e) {
 			throw new HelenaRuntimeException(e);
 		}
-		return result;
-	}
 
-	public List<String> getColumnsBySecondary(final String key) {
-		final List<String> result = new ArrayList<String>();
-		try {
-			execute(new Command<Void>() {
-				@Override
-				public Void execute(final Keyspace ks) throws HectorException {
-					
-					SlicePredicate predicate = new SlicePredicate();
-					SliceRange sliceRange = new SliceRange();
-			        sliceRange.setStart(new byte[] {});
-			        sliceRange.setFinish(new byte[] {});
-			        predicate.setSlice_range(sliceRange);
-			        
-					List<Column> list = ks.getSlice(
-							key, new ColumnParent(secondaryColumnFamily), predicate);
-					
-					if (list != null && !list.isEmpty()) {
-						String name = null;
-						for (Column column : list) {
-							name = typeConverter.bytesToString(column.getName());
-							result.add(name);
+		final Map<String, List<T>> result = new LinkedHashMap<String, List<T>>();
+		for (final String key : keyList) {
+			final List<Column> columns = rows.get(key);
+			final List<T> entries = new ArrayList<T>();
+			if (columns != null && !columns.isEmpty()) {
+				call.addRows(1);
+				call.addColumns(columns);
+				final Function<Column, T> converter = entryConverter(key);
+				for (final Column column : columns) {
+					entries.add(converter.apply(column));
+				}
+				if (columns.size() >= pageSize) {
+					final byte[] last = columns.get(columns.size() - 1).getName();
+					final Iterator<Column> rest = sliceIterator(key, columnFamily, last, new byte[0], false,
+							pageSize, Functions.<Column>identity());
+					while (rest.hasNext()) {
+						final Column column = rest.next();
+						if (!Arrays.equals(last, column.getName())) {
+							entries.add(converter.apply(column));
 						}
 					}
-					return null;
 				}
-			});
-		} catch (final Exception e) {
-			throw new HelenaRuntimeException(e);
+			}
+			result.put(key, entries);
 		}
 		return result;
 	}
 
-	public List<String> getValues(final String key) {
-		final List<String> result = new ArrayList<String>();
-		try {
-			execute(new Command<Void>() {
-				@Override
-				public Void execute(final Keyspace ks) throws HectorException {
-					
-					SlicePredicate predicate = new SlicePredicate();
-					SliceRange sliceRange = new SliceRange();
-			        sliceRange.setStart(new byte[] {});
-			        sliceRange.setFinish(new byte[] {});
-			        predicate.setSlice_range(sliceRange);
-			        
-					List<Column> list = ks.getSlice(
-							key, new ColumnParent(columnFamily), predicate);
-					
-					if (list != null && !list.isEmpty()) {
-						String value = null;
-						for (Column column : list) {
-							value = typeConverter.bytesToString(column.getValue());
-							result.add(value);
-						}
+	private Function<Column, T> entryConverter(final String key) {
+		final Object keyValue = String.class.equals(keyPropertyDescriptor.getPropertyType())
+				? key : typeConverter.keyFromString(keyPropertyDescriptor.getPropertyType(), key);
+		final Class<?> columnType = columnPropertyDescriptor.getPropertyType();
+		final Class<?> valueType = valuePropertyDescriptor != null ? valuePropertyDescriptor.getPropertyType() : null;
+		return new Function<Column, T>() {
+			@Override
+			public T apply(final Column column) {
+				try {
+					final T object = clz.newInstance();
+					PropertyUtils.setProperty(object, keyPropertyDescriptor.getName(), keyValue);
+					PropertyUtils.setProperty(object, columnPropertyDescriptor.getName(),
+							typeConverter.convertByteArrayToValueObject(columnType, column.getName()));
+					if (valueType != null) {
+						PropertyUtils.setProperty(object, valuePropertyDescriptor.getName(),
+								typeConverter.convertByteArrayToValueObject(valueType, column.getValue()));
 					}
-					return null;
+					return object;
+				} catch (final HelenaRuntimeException e) {
+					throw e;
+				} catch (final Exception e) {
+					throw new HelenaRuntimeException(e);
 				}
-			});
-		} catch (final Exception e) {
-			throw new HelenaRuntimeException(e);
+			}
+		};
+	}
+
+	private <C> Function<Column, C> name(final Class<C> type, final Class<?> propertyType) {
+		checkAssignable(type, propertyType);
+		return new Function<Column, C>() {
+			@Override
+			public C apply(final Column column) {
+				return type.cast(typeConverter.convertByteArrayToValueObject(propertyType, column.getName()));
+			}
+		};
+	}
+
+	private Function<Column, String> nameAsString() {
+		return new Function<Column, String>() {
+			@Override
+			public String apply(final Column column) {
+				return typeConverter.bytesToString(column.getName());
+			}
+		};
+	}
+
+	private static void checkAssignable(final Class<?> type, final Class<?> propertyType) {
+		if (!type.isAssignableFrom(propertyType)) {
+			throw new IllegalArgumentException("Property of type " + propertyType.getName()
+					+ " can not be read as " + type.getName());
+		}
+	}
+
+	private <V> Iterator<V> sliceIterator(final String key, final String family,
+			final ColumnRange range, final Function<Column, V> converter) {
+		return sliceIterator(key, family, typeConverter.convertValueObjectToByteArray(range.getStart()),
+				typeConverter.convertValueObjectToByteArray(range.getFinish()), range.isReversed(),
+				range.getPageSize(), converter);
+	}
+
+	private <V> Iterator<V> sliceIterator(final String key, final String family, final byte[] start,
+			final byte[] finish, final boolean reversed, final int pageSize, final Function<Column, V> converter) {
+		final ColumnSliceIterator.SliceSource source = new ColumnSliceIterator.SliceSource() {
+			@Override
+			public List<Column> fetch(final byte[] from, final int count) {
+				final MetricsCall call = metrics.start(Operation.GET);
+				try {
+					call.addKeys(1);
+					final List<Column> columns = execute(new Command<List<Column>>() {
+						@Override
+						public List<Column> execute(final Keyspace ks) throws HectorException {
+							final SlicePredicate predicate = new SlicePredicate();
+							predicate.setSlice_range(new SliceRange(from, finish, reversed, count));
+							final List<Column> list = ks.getSlice(key, new ColumnParent(family), predicate);
+							return list != null ? list : Collections.<Column>emptyList();
+						}
+					});
+					call.addColumns(columns);
+					return columns;
+				} catch (final HelenaRuntimeException e) {
+					call.failed();
+					throw e;
+				} catch (final Exception e) {
+					call.failed();
+					throw new HelenaRuntimeException(e);
+				} finally {
+					call.end();
+				}
+			}
+		};
+		return new ColumnSliceIterator<V>(source, start, pageSize, converter);
+	}
+
+	private static <V> List<V> drain(final Iterator<V> iterator) {
+		final List<V> result = new ArrayList<V>();
+		while (iterator.hasNext()) {
+			result.add(iterator.next());
 		}
 		return result;
 	}
 
 	private <V> V execute(final Command<V> command) throws Exception {
-		if (hostname != null) {
-			return command.execute(hostname, port, keyspace);
-		} else if (nodes != null) {
-			return command.execute(nodes, keyspace, consistencyLevel);
-		} else {
-			throw new HelenaRuntimeException(
-					"One of these must be set: hostname and port or an array of nodes.");
+		final MetricsCall call = MetricsCall.current();
+		call.beginNetwork();
+		try {
+			return clientPool.execute(command, keyspace, consistencyLevel);
+		} finally {
+			call.endNetwork();
 		}
 	}
 
+	/**
+	 * @return the call metrics of the column family, shared with all other DAOs of the column family
+	 */
+	public HelenaMetrics getMetrics() {
+		return metrics;
+	}
+
 	public ConsistencyLevel getConsistencyLevel() {
 		return consistencyLevel;
 	}
@@ -365,4 +748,18 @@ public class HelenaColumnDAO<T> {
 		this.consistencyLevel = consistencyLevel;
 	}
 
+	public int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+
+	/**
+	 * @param maxBatchSize the maximum number of objects sent in a single batch_mutate call
+	 */
+	public void setMaxBatchSize(final int maxBatchSize) {
+		if (maxBatchSize < 1) {
+			throw new IllegalArgumentException("Batch size must be positive, was " + maxBatchSize);
+		}
+		this.maxBatchSize = maxBatchSize;
+	}
+
 }
@@ -25,18 +25,31 @@
  */
 package org.thiesen.helenaorm;
 
-import java.beans.PropertyDescriptor;
-import java.lang.annotation.Annotation;
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.HashMap;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import me.prettyprint.cassandra.dao.Command;
 import me.prettyprint.cassandra.model.HectorException;
+import me.prettyprint.cassandra.service.BatchMutation;
 import me.prettyprint.cassandra.service.CassandraClient;
 import me.prettyprint.cassandra.service.Keyspace;
 
@@ -44,97 +57,114 @@ import org.apache.cassandra.thrift.Column;
 import org.apache.cassandra.thrift.ColumnParent;
 import org.apache.cassandra.thrift.ColumnPath;
 import org.apache.cassandra.thrift.ConsistencyLevel;
+import org.apache.cassandra.thrift.Deletion;
+import org.apache.cassandra.thrift.KeyRange;
 import org.apache.cassandra.thrift.SlicePredicate;
 import org.apache.cassandra.thrift.SuperColumn;
-import org.apache.commons.beanutils.PropertyUtils;
 import org.thiesen.helenaorm.annotations.HelenaBean;
-import org.thiesen.helenaorm.annotations.KeyProperty;
-import org.thiesen.helenaorm.annotations.SuperColumnProperty;
-import org.thiesen.helenaorm.annotations.Transient;
 
+import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
-import com.google.common.collect.ImmutableSet.Builder;
+import com.google.common.collect.MapMaker;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import org.apache.cassandra.thrift.SliceRange;
 
 public class HelenaDAO<T> {
 
-    private final String _hostname;
-    private final int _port;
-	private String[] _nodes = null;
+    private static final int DEFAULT_MAX_BATCH_SIZE = 100;
+    private static final int DEFAULT_MAX_IN_FLIGHT = 2;
+    private static final int DEFAULT_QUEUE_CAPACITY = 1000;
+    private static final int DEFAULT_SCAN_PAGE_SIZE = 100;
+    private static final int DEFAULT_MULTIGET_CHUNK_SIZE = 100;
+    private static final int DEFAULT_MULTIGET_PARALLELISM = 4;
+    private static final int SEGMENTS_PER_THREAD = 4;
+
+    private final HelenaClientPool _clientPool;
 
     private final String _keyspace;
     private final String _columnFamily;
+    private final ImmutableList<String> _columnFamilies;
     
 	private ConsistencyLevel consistencyLevel = CassandraClient.DEFAULT_CONSISTENCY_LEVEL;
+	private int _maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+    private int _maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+    private int _queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private QueueFullPolicy _queueFullPolicy = QueueFullPolicy.BLOCK;
+    private AsyncWriter _asyncWriter;
+
+    private volatile int _multigetChunkSize = DEFAULT_MULTIGET_CHUNK_SIZE;
+    private int _multigetParallelism = DEFAULT_MULTIGET_PARALLELISM;
+    private ExecutorService _multigetExecutor;
 
-    private final PropertyDescriptor[] _propertyDescriptors;
+    private final BeanMapping<T> _mapping;
     private final ImmutableList<byte[]> _columnNames;
-    private final Class<T> _clz;
-    private PropertyDescriptor _keyPropertyDescriptor;
-    private PropertyDescriptor _superColumnPropertyDescriptor;
     private final TypeConverter _typeConverter;
+    private final TimestampProvider _timestampProvider;
+    private final RowCache _rowCache;
+    private final HelenaMetrics _metrics;
+    private final ConcurrentMap<Projection, SlicePredicate> _projections = new ConcurrentHashMap<Projection, SlicePredicate>();
+
+    private final ThreadLocal<MarshalledObject> _marshalBuffers = new ThreadLocal<MarshalledObject>() {
+        @Override
+        protected MarshalledObject initialValue() {
+            return newMarshalledObject();
+        }
+    };
+    private final ConcurrentMap<T, Snapshot> _snapshots = new MapMaker().weakKeys().makeMap();
+    private volatile boolean _trackChanges;
+
+    private final Function<Map.Entry<String, List<Column>>, T> _rowConverter = new Function<Map.Entry<String, List<Column>>, T>() {
+        @Override
+        public T apply( final Map.Entry<String, List<Column>> row ) {
+            return applyColumns( row.getKey(), row.getValue(), true );
+        }
+    };
 
-    private Map<String, Field> _fields;
-    private Field _keyField;
+    private final Function<Map.Entry<String, List<Column>>, T> _projectedRowConverter = new Function<Map.Entry<String, List<Column>>, T>() {
+        @Override
+        public T apply( final Map.Entry<String, List<Column>> row ) {
+            return applyColumns( row.getKey(), row.getValue(), false );
+        }
+    };
 
-    HelenaDAO( final Class<T> clz, final String hostname, final int port, final SerializeUnknownClasses serializationPolicy,
-            final ImmutableMap<Class<?>, TypeMapping<?>> typeMappings ) {
+    HelenaDAO( final Class<T> clz, final HelenaClientPool clientPool, final TypeConverter typeConverter,
+            final RowCacheConfig rowCacheConfig, final TimestampProvider timestampProvider ) {
     	
         if ( !clz.isAnnotationPresent( HelenaBean.class ) ) {
             throw new IllegalArgumentException("Trying to get a HelenaDAO for a class that is not mapped with @HelenaBean");
         }
         
         final HelenaBean annotation = clz.getAnnotation( HelenaBean.class );
-        _typeConverter = new TypeConverter( typeMappings, serializationPolicy );
-        _clz = clz;
-        _propertyDescriptors = PropertyUtils.getPropertyDescriptors( clz );
+        _typeConverter = typeConverter;
+        _mapping = BeanMapping.create( clz, _typeConverter, annotation.fieldAccess() );
         _columnFamily = annotation.columnFamily();
-        _hostname = hostname;
-        _port = port;
+        _columnFamilies = ImmutableList.of( _columnFamily );
+        _clientPool = clientPool;
+        _timestampProvider = timestampProvider;
         _keyspace = annotation.keyspace();
+        _metrics = HelenaMetrics.forColumnFamily( _keyspace, _columnFamily );
 
         if (annotation.consistency() != null) {
         	this.setConsistencyLevel(annotation.consistency());
         }
         
-        _fields = new HashMap<String, Field>();
-        for (Field field : clz.getDeclaredFields()) {
-        	_fields.put(field.getName(), field);
-        	if (field.isAnnotationPresent(KeyProperty.class)) {
-        		_keyField = field;
-        	}
-		}
-        
-        final Builder<byte[]> setBuilder = ImmutableSet.<byte[]>builder();
-        for ( final PropertyDescriptor descriptor : _propertyDescriptors ) {
-            setBuilder.add( _typeConverter.stringToBytes( descriptor.getName() ) );
-            if ( isKeyProperty( descriptor  ) ) {
-                _keyPropertyDescriptor = descriptor;
-            }
-            if ( isSuperColumnProperty( descriptor ) ) {
-                _superColumnPropertyDescriptor = descriptor;
-            }
-        }
-        _columnNames = ImmutableList.copyOf( setBuilder.build() );
-
-        if ( _keyField == null && _keyPropertyDescriptor == null ) {
-            throw new HelenaRuntimeException("Could not find key of class " + clz.getName() + ", did you annotate with @KeyProperty" );
-        }
-    }
+        _columnNames = _mapping.getPropertyColumnNames();
 
-    HelenaDAO( final Class<T> clz, final String[] nodes, final SerializeUnknownClasses serializationPolicy,
-            final ImmutableMap<Class<?>, TypeMapping<?>> typeMappings ) {
-    	
-    	this(clz, null, 0, serializationPolicy, typeMappings);
-    	this._nodes = nodes;
+        final RowCacheConfig cacheConfig = rowCacheConfig != null ? rowCacheConfig : makeRowCacheConfig( annotation );
+        _rowCache = cacheConfig.isEnabled() ? new RowCache( cacheConfig ) : null;
+        _trackChanges = annotation.trackChanges() && !_mapping.isSuperColumnMapped();
     }
 
-    private boolean isSuperColumnProperty( final PropertyDescriptor descriptor ) {
-        return safeIsAnnotationPresent( descriptor, SuperColumnProperty.class );
+    private static RowCacheConfig makeRowCacheConfig( final HelenaBean annotation ) {
+        return new RowCacheConfig()
+            .setMaxEntries( annotation.cacheSize() )
+            .setMaxBytes( annotation.cacheMaxBytes() )
+            .setTtl( annotation.cacheTtlSeconds(), TimeUnit.SECONDS );
     }
 
     /**
@@ -142,82 +172,179 @@ public class HelenaDAO<T> {
      * @param object The object to insert.
      */
     public void insert( final T object ) {
+        insert( object, nextTimestamp() );
+    }
 
-        final MarshalledObject marshalledObject = MarshalledObject.create();
-
-        for ( final PropertyDescriptor d : _propertyDescriptors ) {
-            if ( isReadWrite( d ) ) {
-                try {
-                	
-                    final String name = d.getName();
-                    final byte[] value = _typeConverter.convertValueObjectToByteArray( PropertyUtils.getProperty( object, name ) );
-                    
-                    if ( isKeyProperty( d ) ) {
-                        marshalledObject.setKey( value );
-                    } else if ( isSuperColumnProperty( d ) ) {
-                        marshalledObject.setSuperColumn( value );
-                    } else if ( !isTransient(d) ) {
-                        marshalledObject.addValue( name, value );
-                    }
+    /**
+     * Inserts a object into Cassandra with an explicit timestamp, e.g. to replay writes in their original order.
+     */
+    public void insert( final T object, final long timestamp ) {
+        MarshalledObject marshalledObject = _marshalBuffers.get();
+        final boolean pooled = marshalledObject.acquire();
+        if ( !pooled ) {
+            marshalledObject = newMarshalledObject();
+        }
+        final MetricsCall call = _metrics.start( Operation.INSERT );
+        try {
+            marshal( object, marshalledObject );
+            store( marshalledObject, timestamp );
+            if ( _trackChanges ) {
+                final Map<PropertyMapping, byte[]> values = Maps.newIdentityHashMap();
+                final List<PropertyMapping> columns = _mapping.getColumns();
+                for ( int i = 0; i < columns.size(); i++ ) {
+                    values.put( columns.get( i ), marshalledObject.getValue( i ) );
+                }
+                _snapshots.put( object, new Snapshot( marshalledObject.getKey(), values ) );
+            }
+        } catch ( final RuntimeException e ) {
+            call.failed();
+            throw e;
+        } finally {
+            if ( pooled ) {
+                marshalledObject.release();
+            }
+            call.end();
+        }
+    }
+
+    /**
+     * Writes only the properties that changed since the object was read or inserted through this DAO,
+     * as one batch mutation. Properties annotated with {@link org.thiesen.helenaorm.annotations.DeleteIfNull}
+     * that changed to null are deleted. Objects this DAO has no snapshot of, because change tracking is
+     * disabled, the object was read with a projection, deleted, written by a batch or asynchronously or
+     * its key changed, are inserted completely.
+     */
+    public void update( final T object ) {
+        update( object, nextTimestamp() );
+    }
+
+    public void update( final T object, final long timestamp ) {
+        final Snapshot snapshot = _trackChanges ? _snapshots.get( object ) : null;
+        final String key = getKeyFrom( object );
+        if ( snapshot == null || !snapshot._key.equals( key ) ) {
+            insert( object, timestamp );
+            return;
+        }
 
-                } catch ( final NoSuchMethodException e ) {
-                    throw new HelenaRuntimeException( e );
-                } catch ( final IllegalAccessException e ) {
-                    throw new HelenaRuntimeException( e );
-                } catch ( final InvocationTargetException e ) {
-                    throw new HelenaRuntimeException( e );
+        final BatchMutation mutation = new BatchMutation();
+        final List<byte[]> deletedColumns = Lists.newArrayList();
+        final Map<PropertyMapping, byte[]> values = Maps.newIdentityHashMap();
+        for ( final PropertyMapping column : _mapping.getColumns() ) {
+            final Object value = column.getValue( object );
+            final byte[] previous = snapshot._values.get( column );
+            if ( value == null && column.isDeleteIfNull() ) {
+                if ( previous != null ) {
+                    deletedColumns.add( column.getColumnName() );
                 }
+                values.put( column, null );
+                continue;
+            }
+            final byte[] bytes = column.toBytes( value );
+            if ( previous == null ? value != null : !Arrays.equals( previous, bytes ) ) {
+                mutation.addInsertion( key, _columnFamilies, new Column( column.getColumnName(), bytes, timestamp ) );
+                values.put( column, bytes );
+            } else {
+                values.put( column, previous );
             }
         }
+        if ( !deletedColumns.isEmpty() ) {
+            final SlicePredicate predicate = new SlicePredicate();
+            predicate.setColumn_names( deletedColumns );
+            final Deletion deletion = new Deletion( timestamp );
+            deletion.setPredicate( predicate );
+            mutation.addDeletion( key, _columnFamilies, deletion );
+        }
 
-        if ( marshalledObject.getKey() == null ||
-                marshalledObject.getKey().length == 0 ) {
-            throw new HelenaRuntimeException("Key is null, can't store object");
+        if ( !mutation.isEmpty() ) {
+            batchMutate( mutation, ImmutableList.of( key ) );
         }
+        _snapshots.put( object, new Snapshot( key, values ) );
+    }
 
-        store( marshalledObject );
+    /**
+     * Inserts all objects, grouping them into as few batch mutations as the maximum batch size allows.
+     * @param objects The objects to insert.
+     */
+    public void insertAll( final Iterable<? extends T> objects ) {
+        newBatch().insertAll( objects ).flush();
     }
 
-    private boolean isKeyProperty( final PropertyDescriptor d ) {
-        return safeIsAnnotationPresent( d, KeyProperty.class );
+    /**
+     * Inserts all objects with the same explicit timestamp, see {@link #insertAll(Iterable)}.
+     */
+    public void insertAll( final Iterable<? extends T> objects, final long timestamp ) {
+        newBatch().insertAll( objects, timestamp ).flush();
     }
 
-    private boolean isTransient( final PropertyDescriptor d ) {
-        return safeIsAnnotationPresent( d, Transient.class );
+    /**
+     * @return a new batch that collects insertions across rows and sends them with one batch_mutate
+     * call per {@link #getMaxBatchSize()} objects
+     */
+    public HelenaBatch<T> newBatch() {
+        return new HelenaBatch<T>( this, _maxBatchSize );
     }
 
-    private boolean safeIsAnnotationPresent( final PropertyDescriptor d, final Class<? extends Annotation> annotation ) {
-        return nullSafeAnnotationPresent( annotation, _fields.get(d.getName()) ) ||
-	    	nullSafeAnnotationPresent( annotation, d.getReadMethod() ) ||
-	    	nullSafeAnnotationPresent( annotation, d.getWriteMethod() );
+    /**
+     * @return a bulk loader that writes a json2sstable input file for this DAO's column family, using
+     * all available processors and up to a quarter of the maximum heap
+     */
+    public HelenaBulkLoader<T> newBulkLoader( final File output ) {
+        return newBulkLoader( output, Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().maxMemory() / 4 );
     }
 
-    private boolean nullSafeAnnotationPresent( final Class<? extends Annotation> annotation, final Method method ) {
-        if ( method != null ) {
-            if ( method.isAnnotationPresent( annotation ) ) {
-                return true;
-            }
+    /**
+     * @param threads the number of threads that marshal objects
+     * @param maxMemoryBytes the size of the columns held in memory before they are spilled into
+     * temporary files next to the output
+     */
+    public HelenaBulkLoader<T> newBulkLoader( final File output, final int threads, final long maxMemoryBytes ) {
+        if ( _mapping.isSuperColumnMapped() ) {
+            throw new HelenaRuntimeException( "Bulk loading is not supported for beans mapped to super columns" );
         }
-        return false;
+        return new HelenaBulkLoader<T>( this, output, output.getAbsoluteFile().getParentFile(), threads,
+                maxMemoryBytes, nextTimestamp() );
+    }
+
+    MarshalledObject marshal( final T object ) {
+        return marshal( object, newMarshalledObject() );
     }
 
-    private boolean nullSafeAnnotationPresent( final Class<? extends Annotation> annotation, final Field field ) {
-        return(field != null && field.isAnnotationPresent(annotation));
+    /**
+     * @return an empty buffer sized for this DAO's columns
+     */
+    MarshalledObject newMarshalledObject() {
+        return new MarshalledObject( _mapping.getColumns() );
     }
 
-    private boolean isReadWrite( final PropertyDescriptor d ) {
-        return d.getReadMethod() != null && d.getWriteMethod() != null;
+    /**
+     * Fills the buffer with the values of the object, replacing the values of the previous object.
+     */
+    MarshalledObject marshal( final T object, final MarshalledObject marshalledObject ) {
+
+        marshalledObject.setKey( _mapping.getKey().readKey( object ) );
+        if ( _mapping.isSuperColumnMapped() ) {
+            marshalledObject.setSuperColumn( _mapping.getSuperColumn().readBytes( object ) );
+        }
+        final List<PropertyMapping> columns = _mapping.getColumns();
+        for ( int i = 0; i < columns.size(); i++ ) {
+            marshalledObject.setValue( i, columns.get( i ).readBytes( object ) );
+        }
+
+        if ( marshalledObject.getKey() == null ||
+                marshalledObject.getKey().length() == 0 ) {
+            throw new HelenaRuntimeException("Key is null, can't store object");
+        }
+
+        return marshalledObject;
     }
 
-    private void store( final MarshalledObject marshalledObject ) {
+    private void store( final MarshalledObject marshalledObject, final long timestamp ) {
     	
-        final byte[] idColumn = marshalledObject.getKey();
-        final List<Column> columnList = Lists.newLinkedList();
-        final long timestamp = System.currentTimeMillis();
-        
-        for ( final Map.Entry<String, byte[]> property : marshalledObject.getEntries() ) {
-            columnList.add( toColumn( property, timestamp ) );
-        }
+        final String idColumn = marshalledObject.getKey();
+        final List<Column> columnList = toColumns( marshalledObject, timestamp );
+        final MetricsCall call = MetricsCall.current();
+        call.addRows( 1 );
+        call.addColumns( columnList );
 
         final Map<String, List<Column>> columnMap;
         final Map<String, List<SuperColumn>> superColumnMap;
@@ -231,52 +358,263 @@ public class HelenaDAO<T> {
             superColumnMap = null;
         }
 
+        invalidate( idColumn );
         try {
             execute(new Command<Void>(){
                 @Override
                 public Void execute(final Keyspace ks) throws HectorException {
-                    ks.batchInsert( _typeConverter.bytesToString( idColumn ), 
-                            columnMap, superColumnMap );
+                    ks.batchInsert( idColumn, columnMap, superColumnMap );
 
                     return null;
                 }
             } );
         } catch ( final Exception e ) {
             throw new HelenaRuntimeException(e);
+        } finally {
+            invalidate( idColumn );
+        }
+    }
+
+    /**
+     * Queues the object for insertion by a background writer, which coalesces queued writes into batches.
+     * @return a future that completes once the write has been acknowledged by Cassandra
+     */
+    public Future<Void> insertAsync( final T object ) {
+        return insertAsync( object, nextTimestamp() );
+    }
+
+    public Future<Void> insertAsync( final T object, final long timestamp ) {
+        final MarshalledObject marshalledObject = marshal( object );
+        _snapshots.remove( object );
+        invalidate( marshalledObject.getKey() );
+        return submitAsync( new RowWrite( marshalledObject.getKey() ) {
+            @Override
+            public void addTo( final BatchMutation mutation ) {
+                addInsertion( mutation, marshalledObject, timestamp );
+            }
+        } );
+    }
+
+    public Future<Void> deleteAsync( final T object ) {
+        _snapshots.remove( object );
+        return deleteAsync( getKeyFrom( object ) );
+    }
+
+    /**
+     * Queues the removal of the mapped columns of the row with the given key, see {@link #insertAsync(Object)}.
+     * Cassandra does not accept the removal of a whole row in a batch mutation.
+     */
+    public Future<Void> deleteAsync( final String key ) {
+        return deleteAsync( key, nextTimestamp() );
+    }
+
+    public Future<Void> deleteAsync( final String key, final long timestamp ) {
+        if ( _mapping.isSuperColumnMapped() ) {
+            throw new HelenaRuntimeException( "Asynchronous deletes are not supported for beans mapped to super columns" );
+        }
+        final Deletion deletion = new Deletion( timestamp );
+        deletion.setPredicate( makeSlicePredicateWithAllPropertyColumns() );
+        invalidate( key );
+        return submitAsync( new RowWrite( key ) {
+            @Override
+            public void addTo( final BatchMutation mutation ) {
+                mutation.addDeletion( key, _columnFamilies, deletion );
+            }
+        } );
+    }
+
+    /**
+     * Blocks until all asynchronous writes issued before this call have been sent.
+     */
+    public void flush() {
+        final AsyncWriter asyncWriter;
+        synchronized ( this ) {
+            asyncWriter = _asyncWriter;
+        }
+        if ( asyncWriter != null ) {
+            asyncWriter.flush();
+        }
+    }
+
+    /**
+     * Configures the asynchronous write path. Must be called before the first asynchronous write.
+     * @param maxInFlight the number of batch mutations that may be sent concurrently
+     * @param queueCapacity the number of writes that may be queued before the queue full policy applies
+     * @param queueFullPolicy whether callers block or fail when the queue is full
+     */
+    public synchronized void configureAsyncWrites( final int maxInFlight, final int queueCapacity, final QueueFullPolicy queueFullPolicy ) {
+        if ( _asyncWriter != null ) {
+            throw new IllegalStateException( "Asynchronous writes are already running" );
         }
+        _maxInFlight = maxInFlight;
+        _queueCapacity = queueCapacity;
+        _queueFullPolicy = queueFullPolicy;
     }
 
-    private Column toColumn( final Entry<String, byte[]> property, final long timestamp ) {
-        return new Column( _typeConverter.stringToBytes( property.getKey() ), property.getValue(), timestamp );
+    /**
+     * Sends all queued writes and waits until they have been acknowledged or failed, then stops the
+     * background writers. A later asynchronous write starts new ones.
+     */
+    public synchronized void shutdownAsyncWrites() {
+        if ( _asyncWriter != null ) {
+            _asyncWriter.shutdown();
+            _asyncWriter = null;
+        }
+    }
+
+    /**
+     * Queues the write with the current writer. A writer that was shut down after it was handed out
+     * is replaced by a new one, as if the write had been issued after the shutdown.
+     */
+    private Future<Void> submitAsync( final AsyncWriter.Write write ) {
+        while ( true ) {
+            final Future<Void> future = asyncWriter().trySubmit( write );
+            if ( future != null ) {
+                return future;
+            }
+        }
+    }
+
+    private synchronized AsyncWriter asyncWriter() {
+        if ( _asyncWriter == null ) {
+            _asyncWriter = new AsyncWriter( _columnFamily, new AsyncWriter.Sink() {
+                @Override
+                public void batchMutate( final BatchMutation mutation, final List<AsyncWriter.Write> writes ) {
+                    final List<String> keys = Lists.newArrayListWithCapacity( writes.size() );
+                    for ( final AsyncWriter.Write write : writes ) {
+                        keys.add( ( (RowWrite) write )._key );
+                    }
+                    HelenaDAO.this.batchMutate( mutation, keys );
+                }
+            }, _maxInFlight, _queueCapacity, _maxBatchSize, _queueFullPolicy );
+        }
+        return _asyncWriter;
+    }
+
+    /**
+     * @return the key of the row the object is inserted into
+     */
+    String addInsertion( final BatchMutation mutation, final T object, final long timestamp ) {
+        final MarshalledObject marshalledObject = marshal( object );
+        addInsertion( mutation, marshalledObject, timestamp );
+        _snapshots.remove( object );
+        return marshalledObject.getKey();
+    }
+
+    private void addInsertion( final BatchMutation mutation, final MarshalledObject marshalledObject, final long timestamp ) {
+        final String key = marshalledObject.getKey();
+        final List<Column> columnList = toColumns( marshalledObject, timestamp );
+
+        if ( marshalledObject.isSuperColumnPresent() ) {
+            mutation.addSuperInsertion( key, _columnFamilies, new SuperColumn( marshalledObject.getSuperColumn(), columnList ) );
+        } else {
+            for ( final Column column : columnList ) {
+                mutation.addInsertion( key, _columnFamilies, column );
+            }
+        }
+    }
+
+    /**
+     * @param keys the keys of all rows the mutation writes to
+     */
+    void batchMutate( final BatchMutation mutation, final Iterable<String> keys ) {
+        final MetricsCall call = _metrics.start( Operation.BATCH_MUTATE );
+        try {
+            invalidate( keys );
+            call.addRows( Iterables.size( keys ) );
+            execute(new Command<Void>(){
+                @Override
+                public Void execute(final Keyspace ks) throws HectorException {
+                    ks.batchMutate( mutation );
+                    return null;
+                }
+            } );
+        } catch ( final Exception e ) {
+            call.failed();
+            throw new HelenaRuntimeException(e);
+        } finally {
+            invalidate( keys );
+            call.end();
+        }
+    }
+
+    List<Column> toColumns( final MarshalledObject marshalledObject, final long timestamp ) {
+        return marshalledObject.toColumns( timestamp );
+    }
+
+    long nextTimestamp() {
+        return _timestampProvider.nextTimestamp();
     }
 
     private <V> V execute(final Command<V> command) throws Exception {
-    	if (_hostname != null) {
-    		return command.execute(_hostname, _port, _keyspace);
-    	} else if (_nodes != null) {
-    		return command.execute(_nodes, _keyspace, consistencyLevel);
-    	} else {
-    		throw new HelenaRuntimeException("One of these must be set: hostname and port or an array of nodes.");
-    	}
+        final MetricsCall call = MetricsCall.current();
+        call.beginNetwork();
+        try {
+            return _clientPool.execute( command, _keyspace, consistencyLevel );
+        } finally {
+            call.endNetwork();
+        }
     }
 
     public T get(final String key) {
-    	
+        final MetricsCall call = _metrics.start( Operation.GET );
+        try {
+            call.addKeys( 1 );
+            List<Column> slice = _rowCache == null ? null : _rowCache.get( key );
+            if ( slice == null ) {
+                final long epoch = _rowCache == null ? 0 : _rowCache.startRead();
+                slice = getSlice( key, makeSlicePredicateWithAllPropertyColumns() );
+                if ( slice != null && _rowCache != null ) {
+                    _rowCache.put( key, slice, epoch );
+                }
+            }
+
+            if ( slice == null || slice.isEmpty() ) {
+                return null;
+            }
+            call.addRows( 1 );
+            call.addColumns( slice );
+            return applyColumns( key, slice, true );
+        } catch ( final RuntimeException e ) {
+            call.failed();
+            throw e;
+        } finally {
+            call.end();
+        }
+    }
+
+    /**
+     * Reads only the properties of the projection, bypassing the row cache.
+     * @return the object, or null if there is no row with the key
+     */
+    public T get( final String key, final Projection projection ) {
+        final MetricsCall call = _metrics.start( Operation.GET );
+        try {
+            call.addKeys( 1 );
+            final List<Column> slice = getSlice( key, compile( projection ) );
+            if ( slice == null || slice.isEmpty() ) {
+                return null;
+            }
+            call.addRows( 1 );
+            call.addColumns( slice );
+            return applyColumns( key, slice, false );
+        } catch ( final RuntimeException e ) {
+            call.failed();
+            throw e;
+        } finally {
+            call.end();
+        }
+    }
+
+    private List<Column> getSlice( final String key, final SlicePredicate predicate ) {
         final ColumnParent parent = makeColumnParent();
-        final SlicePredicate predicate = makeSlicePredicateWithAllPropertyColumns();
 
         try {
-            return execute(new Command<T>(){
+            return execute(new Command<List<Column>>(){
                 @Override
-                public T execute(final Keyspace ks) throws HectorException {
+                public List<Column> execute(final Keyspace ks) throws HectorException {
                     try {
-                        final List<Column> slice = ks.getSlice( key, parent , predicate );
-
-                        if ( Iterables.isEmpty( slice ) ) {
-                            return null;
-                        }
-
-                        return applyColumns( key, slice );
+                        return ks.getSlice( key, parent , predicate );
                     } catch (final HectorException e) {
                         return null;
                     }
@@ -287,40 +625,39 @@ public class HelenaDAO<T> {
         }
     }
 
-    private T applyColumns( final String key, final Iterable<Column> slice ) {
-        try {
-            final T newInstance = _clz.newInstance();
-
-            PropertyUtils.setProperty( newInstance, _keyPropertyDescriptor.getName(),
-                    _typeConverter.convertByteArrayToValueObject( _keyPropertyDescriptor.getReadMethod().getReturnType(),
-                            _typeConverter.stringToBytes( key ) ) );
-
-            for ( final Column c : slice ) {
-                final String name = _typeConverter.bytesToString( c.name );
-                if ( PropertyUtils.isWriteable( newInstance, name ) ) {
-                    final PropertyDescriptor propertyDescriptor = PropertyUtils.getPropertyDescriptor( newInstance, name );
-                    final Class<?> returnType = propertyDescriptor.getReadMethod().getReturnType();
-                    PropertyUtils.setProperty( newInstance, name, _typeConverter.convertByteArrayToValueObject( returnType, c.value ) );
+    /**
+     * @param complete whether the slice holds all mapped columns of the row, only then a snapshot is
+     * recorded for change tracking
+     */
+    T applyColumns( final String key, final Iterable<Column> slice, final boolean complete ) {
+        final T newInstance = _mapping.newInstance();
+        final Map<PropertyMapping, byte[]> values = complete && _trackChanges ? Maps.<PropertyMapping, byte[]>newIdentityHashMap() : null;
+
+        _mapping.getKey().writeKey( newInstance, key );
+
+        for ( final Column c : slice ) {
+            final PropertyMapping column = _mapping.getColumn( c.name );
+            if ( column != null ) {
+                column.writeBytes( newInstance, c.value );
+                if ( values != null ) {
+                    values.put( column, c.value );
                 }
             }
+        }
 
-            return newInstance;
-
-        } catch ( final InstantiationException e ) {
-            throw new HelenaRuntimeException("Could not instanciate " + _clz.getName(), e );
-        } catch ( final IllegalAccessException e ) {
-            throw new HelenaRuntimeException("Could not instanciate " + _clz.getName(), e );
-        } catch ( final InvocationTargetException e ) {
-            throw new HelenaRuntimeException( e );
-        } catch ( final NoSuchMethodException e ) {
-            throw new HelenaRuntimeException( e );
+        if ( values != null ) {
+            _snapshots.put( newInstance, new Snapshot( key, values ) );
         }
+        return newInstance;
     }
 
     private List<T> applyColumns( final String key, final List<SuperColumn> slice ) {
+        final MetricsCall call = MetricsCall.current();
         final ImmutableList.Builder<T> listBuilder = ImmutableList.builder();
         for ( final SuperColumn superColumn : slice ) {
-            final T object = applyColumns( key, superColumn.getColumns() );
+            call.addRows( 1 );
+            call.addColumns( superColumn.getColumns() );
+            final T object = applyColumns( key, superColumn.getColumns(), false );
             applySuperColumnName( object, superColumn.getName() );
             listBuilder.add( object );
         }
@@ -328,59 +665,220 @@ public class HelenaDAO<T> {
     }
 
     private void applySuperColumnName( final T object, final byte[] value ) {
-        final Class<?> returnType = _superColumnPropertyDescriptor.getReadMethod().getReturnType();
-        try {
-            PropertyUtils.setProperty( object, _superColumnPropertyDescriptor.getName(),
-                    _typeConverter.convertByteArrayToValueObject( returnType, value ) );
-        } catch ( final IllegalAccessException e ) {
-            throw new HelenaRuntimeException( e );
-        } catch ( final InvocationTargetException e ) {
-            throw new HelenaRuntimeException( e );
-        } catch ( final NoSuchMethodException e ) {
-            throw new HelenaRuntimeException( e );
-        }
+        _mapping.getSuperColumn().writeBytes( object, value );
     }
 
     public void delete( final T object ) {
-        delete( getKeyFrom( object ) );
+        delete( object, nextTimestamp() );
+    }
+
+    public void delete( final T object, final long timestamp ) {
+        _snapshots.remove( object );
+        delete( getKeyFrom( object ), timestamp );
     }
 
     private String getKeyFrom( final T object ) {
-        try {
-            return _typeConverter.bytesToString( _typeConverter.convertValueObjectToByteArray( PropertyUtils.getProperty( object, _keyPropertyDescriptor.getName() ) ) );
-        } catch ( final IllegalAccessException e ) {
-            throw new HelenaRuntimeException( e );
-        } catch ( final InvocationTargetException e ) {
-            throw new HelenaRuntimeException( e );
-        } catch ( final NoSuchMethodException e ) {
-            throw new HelenaRuntimeException( e );
-        }
+        return _mapping.getKey().readKey( object );
     }
 
     public void delete( final String key ) {
+        delete( key, nextTimestamp() );
+    }
+
+    /**
+     * Removes the row with an explicit timestamp, columns written later with a higher timestamp survive.
+     */
+    public void delete( final String key, final long timestamp ) {
+        final MetricsCall call = _metrics.start( Operation.DELETE );
         try {
+            invalidate( key );
+            call.addRows( 1 );
             execute(new Command<Void>(){
                 @Override
                 public Void execute(final Keyspace ks) throws HectorException {
-                    ks.remove( key, new ColumnPath( _columnFamily ) );
+                    ks.remove( key, new ColumnPath( _columnFamily ), timestamp );
                     return null;
                 }
             });
         } catch ( final Exception e ) {
+            call.failed();
             throw new HelenaRuntimeException( e );
+        } finally {
+            invalidate( key );
+            call.end();
         }
     }
 
+    /**
+     * Reads many rows at once, omitting keys without a row, see {@link #get(Iterable, MissingKeys, long, TimeUnit)}.
+     */
     public List<T> get( final Iterable<String> keys ) {
+        return get( keys, MissingKeys.OMIT );
+    }
+
+    public List<T> get( final Iterable<String> keys, final MissingKeys missingKeys ) {
+        return get( keys, missingKeys, 0, TimeUnit.MILLISECONDS );
+    }
+
+    /**
+     * Reads many rows at once. The keys are split into chunks of {@link #getMultigetChunkSize()} keys
+     * that are read concurrently, with the row cache enabled only keys that are not cached are read.
+     * @param missingKeys whether keys without a row are left out or returned as null
+     * @param timeout how long all chunks together may take, 0 to wait as long as the reads take
+     * @return the rows in the order of the given keys
+     */
+    public List<T> get( final Iterable<String> keys, final MissingKeys missingKeys, final long timeout, final TimeUnit unit ) {
+        return get( keys, null, missingKeys, timeout, unit );
+    }
+
+    /**
+     * Reads only the properties of the projection of many rows, omitting keys without a row.
+     */
+    public List<T> get( final Iterable<String> keys, final Projection projection ) {
+        return get( keys, projection, MissingKeys.OMIT, 0, TimeUnit.MILLISECONDS );
+    }
+
+    /**
+     * Reads only the properties of the projection of many rows, bypassing the row cache,
+     * see {@link #get(Iterable, MissingKeys, long, TimeUnit)}.
+     */
+    public List<T> get( final Iterable<String> keys, final Projection projection, final MissingKeys missingKeys,
+            final long timeout, final TimeUnit unit ) {
+        final MetricsCall call = _metrics.start( Operation.MULTIGET );
+        try {
+            return get( keys, projection, missingKeys, timeout, unit, call );
+        } catch ( final RuntimeException e ) {
+            call.failed();
+            throw e;
+        } finally {
+            call.end();
+        }
+    }
+
+    private List<T> get( final Iterable<String> keys, final Projection projection, final MissingKeys missingKeys,
+            final long timeout, final TimeUnit unit, final MetricsCall call ) {
+        final List<String> keyList = ImmutableList.copyOf( keys );
+        call.addKeys( keyList.size() );
+        final long deadline = timeout > 0 ? System.nanoTime() + unit.toNanos( timeout ) : 0;
+        final RowCache rowCache = projection == null ? _rowCache : null;
+        final SlicePredicate predicate = makeSlicePredicate( projection );
+
+        final Map<String, List<Column>> slices = Maps.newHashMap();
+        final Set<String> misses = Sets.newLinkedHashSet();
+        for ( final String key : keyList ) {
+            final List<Column> cached = rowCache == null ? null : rowCache.get( key );
+            if ( cached != null ) {
+                slices.put( key, cached );
+            } else {
+                misses.add( key );
+            }
+        }
+
+        if ( !misses.isEmpty() ) {
+            final long epoch = rowCache == null ? 0 : rowCache.startRead();
+            final Map<String, List<Column>> fetched;
+            call.beginNetwork();
+            try {
+                fetched = multigetSlice( ImmutableList.copyOf( misses ), predicate, deadline );
+            } finally {
+                call.endNetwork();
+            }
+            if ( rowCache != null ) {
+                for ( final Map.Entry<String, List<Column>> entry : fetched.entrySet() ) {
+                    rowCache.put( entry.getKey(), entry.getValue(), epoch );
+                }
+            }
+            slices.putAll( fetched );
+        }
+
+        final List<T> result = Lists.newArrayListWithCapacity( keyList.size() );
+        for ( final String key : keyList ) {
+            final List<Column> slice = slices.get( key );
+            if ( slice != null && !slice.isEmpty() ) {
+                call.addRows( 1 );
+                call.addColumns( slice );
+                result.add( applyColumns( key, slice, projection == null ) );
+            } else if ( missingKeys == MissingKeys.NULL ) {
+                result.add( null );
+            }
+        }
+        return Collections.unmodifiableList( result );
+    }
+
+    private Map<String, List<Column>> multigetSlice( final List<String> keys, final SlicePredicate predicate, final long deadline ) {
+        final List<List<String>> chunks = Lists.partition( keys, _multigetChunkSize );
+        if ( chunks.size() == 1 && deadline == 0 ) {
+            return multigetSlice( keys, predicate );
+        }
+
+        final List<Future<Map<String, List<Column>>>> futures = Lists.newArrayListWithCapacity( chunks.size() );
+        try {
+            for ( final List<String> chunk : chunks ) {
+                futures.add( submitMultiget( new Callable<Map<String, List<Column>>>() {
+                    @Override
+                    public Map<String, List<Column>> call() {
+                        return multigetSlice( chunk, predicate );
+                    }
+                } ) );
+            }
+
+            final Map<String, List<Column>> slices = Maps.newHashMapWithExpectedSize( keys.size() );
+            for ( final Future<Map<String, List<Column>>> future : futures ) {
+                if ( deadline == 0 ) {
+                    slices.putAll( future.get() );
+                } else {
+                    slices.putAll( future.get( Math.max( 0, deadline - System.nanoTime() ), TimeUnit.NANOSECONDS ) );
+                }
+            }
+            return slices;
+        } catch ( final InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new HelenaRuntimeException( "Interrupted while reading " + keys.size() + " keys", e );
+        } catch ( final ExecutionException e ) {
+            if ( e.getCause() instanceof HelenaRuntimeException ) {
+                throw (HelenaRuntimeException) e.getCause();
+            }
+            throw new HelenaRuntimeException( e.getCause() );
+        } catch ( final TimeoutException e ) {
+            throw new HelenaRuntimeException( "Timed out reading " + keys.size() + " keys in " + chunks.size() + " chunks", e );
+        } finally {
+            for ( final Future<?> future : futures ) {
+                future.cancel( true );
+            }
+        }
+    }
+
+    /**
+     * An executor replaced by {@link #setMultigetParallelism(int)} after it was handed out rejects
+     * new tasks, they are passed on to its successor.
+     */
+    private <V> Future<V> submitMultiget( final Callable<V> task ) {
+        while ( true ) {
+            try {
+                return multigetExecutor().submit( task );
+            } catch ( final RejectedExecutionException e ) {
+                // shut down concurrently, the next call creates a new executor
+            }
+        }
+    }
+
+    private synchronized ExecutorService multigetExecutor() {
+        if ( _multigetExecutor == null ) {
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor( _multigetParallelism, _multigetParallelism,
+                    60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory( "helena-multiget-" + _columnFamily ) );
+            executor.allowCoreThreadTimeOut( true );
+            _multigetExecutor = executor;
+        }
+        return _multigetExecutor;
+    }
+
+    private Map<String, List<Column>> multigetSlice( final List<String> keys, final SlicePredicate predicate ) {
         final ColumnParent parent = makeColumnParent();
-        final SlicePredicate predicate = makeSlicePredicateWithAllPropertyColumns();
         try {
-            return execute(new Command<List<T>>(){
+            return execute(new Command<Map<String, List<Column>>>(){
                 @Override
-                public List<T> execute(final Keyspace ks) throws HectorException {
-
-                    final Map<String,List<Column>> slice = ks.multigetSlice( ImmutableList.copyOf( keys ), parent , predicate );
-                    return convertToList( slice );
+                public Map<String, List<Column>> execute(final Keyspace ks) throws HectorException {
+                    return ks.multigetSlice( keys, parent , predicate );
                 }
             }); 
         } catch ( final Exception e ) {
@@ -388,21 +886,216 @@ public class HelenaDAO<T> {
         }
     }
 
+    private void invalidate( final String key ) {
+        if ( _rowCache != null ) {
+            _rowCache.invalidate( key );
+        }
+    }
+
+    private void invalidate( final Iterable<String> keys ) {
+        if ( _rowCache != null ) {
+            _rowCache.invalidate( keys );
+        }
+    }
+
+    /**
+     * @return the counters of the row cache, or null if it is not enabled
+     */
+    public CacheStats getCacheStats() {
+        return _rowCache == null ? null : _rowCache.getStats();
+    }
+
+    /**
+     * @return the call metrics of the column family, shared with all other DAOs of the column family
+     */
+    public HelenaMetrics getMetrics() {
+        return _metrics;
+    }
+
+    /**
+     * Drops all cached rows, e.g. after the column family has been modified by other means.
+     */
+    public void invalidateCache() {
+        if ( _rowCache != null ) {
+            _rowCache.invalidateAll();
+        }
+    }
+
     public List<T> getRange( final String keyStart, final String keyEnd, final int amount ) {
+        return getRange( keyStart, keyEnd, amount, (Projection) null );
+    }
+
+    /**
+     * Reads only the properties of the projection of up to amount rows, starting at keyStart.
+     */
+    public List<T> getRange( final String keyStart, final String keyEnd, final int amount, final Projection projection ) {
         final ColumnParent parent = makeColumnParent();
-        final SlicePredicate predicate = makeSlicePredicateWithAllPropertyColumns();
+        final SlicePredicate predicate = makeSlicePredicate( projection );
+        final MetricsCall call = _metrics.start( Operation.GET_RANGE );
         try {
-            return execute(new Command<List<T>>(){
+            final Map<String,List<Column>> slice = execute(new Command<Map<String,List<Column>>>(){
                 @SuppressWarnings("deprecation")
 				@Override
-                public List<T> execute(final Keyspace ks) throws HectorException {
-
-                    final Map<String,List<Column>> slice = ks.getRangeSlice( parent, predicate, keyStart, keyEnd , amount );
-                    return convertToList( slice );
+                public Map<String,List<Column>> execute(final Keyspace ks) throws HectorException {
+                    return ks.getRangeSlice( parent, predicate, keyStart, keyEnd , amount );
                 }
             }); 
+            return convertToList( slice, projection == null );
         } catch ( final Exception e ) {
+            call.failed();
+            throw e instanceof HelenaRuntimeException ? (HelenaRuntimeException) e : new HelenaRuntimeException( e );
+        } finally {
+            call.end();
+        }
+    }
+
+    /**
+     * Lazily iterates over all rows with keys between keyStart and keyEnd, see {@link #scan(String, String, int)}.
+     */
+    public Iterable<T> scan( final String keyStart, final String keyEnd ) {
+        return scan( keyStart, keyEnd, DEFAULT_SCAN_PAGE_SIZE );
+    }
+
+    /**
+     * Lazily iterates over all rows with keys between keyStart and keyEnd, both inclusive, reading
+     * pageSize rows per call. The next page is read in the background while the current one is
+     * consumed, so memory use is bounded by two pages regardless of the size of the range.
+     * Deleted rows are skipped.
+     * @param keyStart the first key, empty to start at the beginning of the column family
+     * @param keyEnd the last key, empty to scan to the end of the column family
+     */
+    public Iterable<T> scan( final String keyStart, final String keyEnd, final int pageSize ) {
+        return scan( keyStart, keyEnd, pageSize, (Projection) null );
+    }
+
+    /**
+     * Lazily iterates over the rows between keyStart and keyEnd reading only the properties of the
+     * projection, see {@link #scan(String, String, int)}.
+     */
+    public Iterable<T> scan( final String keyStart, final String keyEnd, final int pageSize, final Projection projection ) {
+        if ( pageSize < 1 ) {
+            throw new IllegalArgumentException( "Page size must be positive, was " + pageSize );
+        }
+        final SlicePredicate predicate = makeSlicePredicate( projection );
+        return new Iterable<T>() {
+            @Override
+            public Iterator<T> iterator() {
+                return new RangeScanIterator<T>( new RangeScanIterator.PageSource() {
+                    @Override
+                    public Map<String, List<Column>> fetch( final String startKey, final int count ) {
+                        return getRangeSlices( startKey, keyEnd, count, predicate );
+                    }
+                }, keyStart, pageSize, rowConverter( projection ) );
+            }
+        };
+    }
+
+    /**
+     * Reads every row of the column family, see {@link #parallelScan(int, int, RowCallback)}.
+     */
+    public void parallelScan( final int parallelism, final RowCallback<? super T> callback ) {
+        parallelScan( parallelism, DEFAULT_SCAN_PAGE_SIZE, callback );
+    }
+
+    /**
+     * Reads every row of the column family. The token ring is split into several segments per thread,
+     * which are paged through independently by parallelism threads. Blocks until all rows have been
+     * passed to the callback, which is called from all threads concurrently. Rows are in no particular
+     * order. Requires the cluster to use the RandomPartitioner.
+     * @throws HelenaRuntimeException if reading a segment or the callback failed, the remaining segments are not read
+     */
+    public void parallelScan( final int parallelism, final int pageSize, final RowCallback<? super T> callback ) {
+        parallelScan( parallelism, pageSize, null, callback );
+    }
+
+    /**
+     * Reads the properties of the projection of every row, see {@link #parallelScan(int, int, RowCallback)}.
+     */
+    public void parallelScan( final int parallelism, final int pageSize, final Projection projection, final RowCallback<? super T> callback ) {
+        if ( parallelism < 1 || pageSize < 1 ) {
+            throw new IllegalArgumentException( "Parallelism and page size must be positive" );
+        }
+        parallelScan( TokenRanges.split( parallelism * SEGMENTS_PER_THREAD ), parallelism, pageSize, projection, callback );
+    }
+
+    /**
+     * Reads the rows of the given token ring segments, which may wrap around the end of the ring.
+     */
+    void parallelScan( final List<TokenRanges.Segment> segments, final int parallelism, final int pageSize,
+            final Projection projection, final RowCallback<? super T> callback ) {
+        final SlicePredicate predicate = makeSlicePredicate( projection );
+        final Function<Map.Entry<String, List<Column>>, T> converter = rowConverter( projection );
+        final ExecutorService executor = Executors.newFixedThreadPool( parallelism, new DaemonThreadFactory( "helena-scan-" + _columnFamily ) );
+        final CompletionService<Void> completion = new ExecutorCompletionService<Void>( executor );
+        try {
+            for ( final TokenRanges.Segment segment : segments ) {
+                completion.submit( new Runnable() {
+                    @Override
+                    public void run() {
+                        final Iterator<T> rows = new RangeScanIterator<T>( new RangeScanIterator.PageSource() {
+                            @Override
+                            public Map<String, List<Column>> fetch( final String startKey, final int count ) {
+                                final String startToken = startKey == null ? segment.getStartToken() : TokenRanges.tokenOf( startKey );
+                                if ( startToken.equals( segment.getEndToken() ) ) {
+                                    // the last page ended on the end token, equal tokens would mean the whole ring
+                                    return Collections.emptyMap();
+                                }
+                                final KeyRange range = new KeyRange( count );
+                                range.setStart_token( startToken );
+                                range.setEnd_token( segment.getEndToken() );
+                                return getRangeSlices( range, predicate );
+                            }
+                        }, null, pageSize, converter );
+                        while ( rows.hasNext() && !Thread.currentThread().isInterrupted() ) {
+                            callback.process( rows.next() );
+                        }
+                    }
+                }, null );
+            }
+            for ( int i = 0; i < segments.size(); i++ ) {
+                completion.take().get();
+            }
+        } catch ( final InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new HelenaRuntimeException( "Interrupted while scanning " + _columnFamily, e );
+        } catch ( final ExecutionException e ) {
+            if ( e.getCause() instanceof HelenaRuntimeException ) {
+                throw (HelenaRuntimeException) e.getCause();
+            }
+            throw new HelenaRuntimeException( e.getCause() );
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Map<String, List<Column>> getRangeSlices( final String keyStart, final String keyEnd, final int count,
+            final SlicePredicate predicate ) {
+        final KeyRange range = new KeyRange( count );
+        range.setStart_key( keyStart );
+        range.setEnd_key( keyEnd );
+        return getRangeSlices( range, predicate );
+    }
+
+    private Map<String, List<Column>> getRangeSlices( final KeyRange range, final SlicePredicate predicate ) {
+        final ColumnParent parent = makeColumnParent();
+        final MetricsCall call = _metrics.start( Operation.GET_RANGE );
+        try {
+            final Map<String, List<Column>> slices = execute(new Command<Map<String, List<Column>>>(){
+                @Override
+                public Map<String, List<Column>> execute(final Keyspace ks) throws HectorException {
+                    return ks.getRangeSlices( parent, predicate, range );
+                }
+            });
+            call.addRows( slices.size() );
+            for ( final List<Column> slice : slices.values() ) {
+                call.addColumns( slice );
+            }
+            return slices;
+        } catch ( final Exception e ) {
+            call.failed();
             throw new HelenaRuntimeException( e );
+        } finally {
+            call.end();
         }
     }
 
@@ -410,23 +1103,27 @@ public class HelenaDAO<T> {
         final ColumnParent parent = makeColumnParent();
         final SlicePredicate predicate = new SlicePredicate();
         SliceRange sliceRange = new SliceRange();
-        sliceRange.setStart(_typeConverter.stringToBytes(after));
+        sliceRange.setStart(superColumnName(after));
         sliceRange.setFinish(new byte[0]);
         sliceRange.setCount(limit);
         predicate.setSlice_range(sliceRange);
 
+        final MetricsCall call = _metrics.start( Operation.GET_SUPER_RANGE );
         try {
-            return execute(new Command<List<T>>(){
+            final Map<String, List<SuperColumn>> slice = execute(new Command<Map<String, List<SuperColumn>>>(){
                 @Override
                 @SuppressWarnings("deprecation")
-                public List<T> execute(final Keyspace ks) throws HectorException {
-                        final Map<String, List<SuperColumn>> slice = ks.getSuperRangeSlice(parent, predicate, key, key, limit);
-                        return convertToListSuper(slice);
+                public Map<String, List<SuperColumn>> execute(final Keyspace ks) throws HectorException {
+                        return ks.getSuperRangeSlice(parent, predicate, key, key, limit);
                 }
 
             });
+            return convertToListSuper(slice);
         } catch ( final Exception e ) {
-            throw new HelenaRuntimeException( e );
+            call.failed();
+            throw e instanceof HelenaRuntimeException ? (HelenaRuntimeException) e : new HelenaRuntimeException( e );
+        } finally {
+            call.end();
         }
     }
 
@@ -435,19 +1132,21 @@ public class HelenaDAO<T> {
         final ColumnParent parent = makeColumnParent();
         final SlicePredicate predicate = makeSlicePredicateWithAllPropertyColumns();
 
+        final MetricsCall call = _metrics.start( Operation.MULTIGET );
         try {
-            return execute(new Command<List<T>>(){
+            call.addKeys( Iterables.size( values ) );
+            final Map<String,List<Column>> slice = execute(new Command<Map<String,List<Column>>>(){
                 @Override
-                public List<T> execute(final Keyspace ks) throws HectorException {
-
-                    final Map<String,List<Column>> slice = ks.multigetSlice( ImmutableList.copyOf( values ), parent , predicate );
-
-                    return convertToList( slice );
-
+                public Map<String,List<Column>> execute(final Keyspace ks) throws HectorException {
+                    return ks.multigetSlice( ImmutableList.copyOf( values ), parent , predicate );
                 }
             });
+            return convertToList( slice, true );
         } catch ( final Exception e ) {
-            throw new HelenaRuntimeException( e );
+            call.failed();
+            throw e instanceof HelenaRuntimeException ? (HelenaRuntimeException) e : new HelenaRuntimeException( e );
+        } finally {
+            call.end();
         }
 
 
@@ -459,6 +1158,35 @@ public class HelenaDAO<T> {
         return predicate;
     }
 
+    private SlicePredicate makeSlicePredicate( final Projection projection ) {
+        return projection == null ? makeSlicePredicateWithAllPropertyColumns() : compile( projection );
+    }
+
+    private Function<Map.Entry<String, List<Column>>, T> rowConverter( final Projection projection ) {
+        return projection == null ? _rowConverter : _projectedRowConverter;
+    }
+
+    /**
+     * The predicates of projections are built once per projection and shared, they must not be modified.
+     */
+    private SlicePredicate compile( final Projection projection ) {
+        SlicePredicate predicate = _projections.get( projection );
+        if ( predicate == null ) {
+            final List<byte[]> columnNames = Lists.newArrayList();
+            for ( final String property : projection.getProperties() ) {
+                final PropertyMapping column = _mapping.getColumn( property );
+                if ( column == null ) {
+                    throw new IllegalArgumentException( _mapping.getMappedClass().getName() + " has no mapped property " + property );
+                }
+                columnNames.add( column.getColumnName() );
+            }
+            predicate = new SlicePredicate();
+            predicate.setColumn_names( columnNames );
+            _projections.putIfAbsent( projection, predicate );
+        }
+        return predicate;
+    }
+
     private ColumnParent makeColumnParent() {
         final ColumnParent parent = new ColumnParent();
         parent.setColumn_family( _columnFamily );
@@ -467,14 +1195,17 @@ public class HelenaDAO<T> {
 
     private ColumnPath makeColumnPath(String superColumn) {
         final ColumnPath path = new ColumnPath(_columnFamily);
-        path.setSuper_column(_typeConverter.stringToBytes(superColumn));
+        path.setSuper_column(superColumnName(superColumn));
         return path;
     }
 
-    private List<T> convertToList( final Map<String, List<Column>> slice ) {
+    private List<T> convertToList( final Map<String, List<Column>> slice, final boolean complete ) {
+        final MetricsCall call = MetricsCall.current();
+        call.addRows( slice.size() );
         final ImmutableList.Builder<T> listBuilder = ImmutableList.<T>builder();
         for ( final Map.Entry<String, List<Column>> entry : slice.entrySet() ) {
-            listBuilder.add( applyColumns( entry.getKey(), entry.getValue() ) ); 
+            call.addColumns( entry.getValue() );
+            listBuilder.add( applyColumns( entry.getKey(), entry.getValue(), complete ) ); 
         }
         return listBuilder.build();
     }
@@ -493,29 +1224,49 @@ public class HelenaDAO<T> {
         final ColumnParent parent = makeColumnParent();
         final SlicePredicate predicate = makeSlicePredicateWithColumns( columns );
 
+        final MetricsCall call = _metrics.start( Operation.GET );
         try {
-            return execute(new Command<List<T>>(){
+            call.addKeys( 1 );
+            final List<SuperColumn> slice = execute(new Command<List<SuperColumn>>(){
                 @Override
-                public List<T> execute(final Keyspace ks) throws HectorException {
+                public List<SuperColumn> execute(final Keyspace ks) throws HectorException {
                     try {
-                        final List<SuperColumn> slice = ks.getSuperSlice( key, parent, predicate );
-                        return applyColumns( key, slice );
+                        return ks.getSuperSlice( key, parent, predicate );
                     } catch (final HectorException e) {
                         return null;
                     }
                 }
             }); 
+            return slice == null ? null : applyColumns( key, slice );
         } catch ( final Exception e ) {
-            throw new HelenaRuntimeException( e );
+            call.failed();
+            throw e instanceof HelenaRuntimeException ? (HelenaRuntimeException) e : new HelenaRuntimeException( e );
+        } finally {
+            call.end();
         }
     }
 
     private SlicePredicate makeSlicePredicateWithColumns( final Iterable<String> columns ) {
         final SlicePredicate predicate = new SlicePredicate();
-        predicate.setColumn_names( ImmutableList.copyOf( Iterables.transform( columns, _typeConverter.toByteArrayFunction() ) ) );
+        final List<byte[]> names = Lists.newArrayList();
+        for ( final String column : columns ) {
+            names.add( superColumnName( column ) );
+        }
+        predicate.setColumn_names( names );
         return predicate;
     }
 
+    /**
+     * @return the super column name in the form the super column property writes it, an empty name
+     * stays empty to denote the start or end of a slice
+     */
+    private byte[] superColumnName( final String name ) {
+        if ( name == null || name.length() == 0 || !_mapping.isSuperColumnMapped() ) {
+            return _typeConverter.stringToBytes( name );
+        }
+        return _mapping.getSuperColumn().stringToBytes( name );
+    }
+
 	public ConsistencyLevel getConsistencyLevel() {
 		return consistencyLevel;
 	}
@@ -524,4 +1275,97 @@ public class HelenaDAO<T> {
 		this.consistencyLevel = consistencyLevel;
 	}
 
+    /**
+     * The column values of an object as they were last read or written, missing columns map to null.
+     */
+    private static final class Snapshot {
+
+        private final String _key;
+        private final Map<PropertyMapping, byte[]> _values;
+
+        Snapshot( final String key, final Map<PropertyMapping, byte[]> values ) {
+            _key = key;
+            _values = values;
+        }
+
+    }
+
+    /**
+     * An asynchronous write to a single row, the row is evicted from the cache once the write has been sent.
+     */
+    private abstract static class RowWrite implements AsyncWriter.Write {
+
+        private final String _key;
+
+        RowWrite( final String key ) {
+            _key = key;
+        }
+
+    }
+
+    public boolean isTrackChanges() {
+        return _trackChanges;
+    }
+
+    /**
+     * @param trackChanges whether objects read through this DAO remember their column values for
+     * {@link #update(Object)}, overrides {@link HelenaBean#trackChanges()}
+     */
+    public void setTrackChanges( final boolean trackChanges ) {
+        if ( trackChanges && _mapping.isSuperColumnMapped() ) {
+            throw new IllegalArgumentException( "Change tracking is not supported for super column mapped beans" );
+        }
+        _trackChanges = trackChanges;
+        if ( !trackChanges ) {
+            _snapshots.clear();
+        }
+    }
+
+    public int getMultigetChunkSize() {
+        return _multigetChunkSize;
+    }
+
+    /**
+     * @param multigetChunkSize the maximum number of keys read with a single multiget_slice call
+     */
+    public void setMultigetChunkSize( final int multigetChunkSize ) {
+        if ( multigetChunkSize < 1 ) {
+            throw new IllegalArgumentException( "Chunk size must be positive, was " + multigetChunkSize );
+        }
+        _multigetChunkSize = multigetChunkSize;
+    }
+
+    public synchronized int getMultigetParallelism() {
+        return _multigetParallelism;
+    }
+
+    /**
+     * @param multigetParallelism the maximum number of chunks of multigets read concurrently, reads
+     * in progress finish their chunks with the previous threads
+     */
+    public synchronized void setMultigetParallelism( final int multigetParallelism ) {
+        if ( multigetParallelism < 1 ) {
+            throw new IllegalArgumentException( "Parallelism must be positive, was " + multigetParallelism );
+        }
+        _multigetParallelism = multigetParallelism;
+        if ( _multigetExecutor != null ) {
+            _multigetExecutor.shutdown();
+            _multigetExecutor = null;
+        }
+    }
+
+    public int getMaxBatchSize() {
+        return _maxBatchSize;
+    }
+
+    /**
+     * @param maxBatchSize the maximum number of objects sent in a single batch_mutate call
+     */
+    public void setMaxBatchSize( final int maxBatchSize ) {
+        if ( maxBatchSize < 1 ) {
+            throw new IllegalArgumentException( "Batch size must be positive, was " + maxBatchSize );
+        }
+        _maxBatchSize = maxBatchSize;
+    }
+
 }
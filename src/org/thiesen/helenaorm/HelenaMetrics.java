@@ -0,0 +1,209 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * The metrics of all operations on one column family, shared by all DAOs of the column family. Each
+ * operation is registered as an MBean named
+ * <code>org.thiesen.helenaorm:type=Operations,keyspace=...,columnFamily=...,operation=...</code>.
+ *
+ * Collecting metrics costs two calls to {@link System#nanoTime()} and a few atomic increments per
+ * call, it can be switched off globally with {@link #setEnabled(boolean)}. Slow or large calls can be
+ * logged by installing a {@link CallSampler} with {@link #setSampler(CallSampler)}, this works with
+ * metrics switched off as well.
+ */
+public final class HelenaMetrics {
+
+    private static final Log LOG = LogFactory.getLog( HelenaMetrics.class );
+
+    private static final ConcurrentMap<String, HelenaMetrics> COLUMN_FAMILIES = new ConcurrentHashMap<String, HelenaMetrics>();
+    private static final Map<MetricsReporter, ScheduledFuture<?>> REPORTERS = new ConcurrentHashMap<MetricsReporter, ScheduledFuture<?>>();
+    private static final ScheduledExecutorService REPORTING = Executors.newSingleThreadScheduledExecutor( new DaemonThreadFactory( "helena-metrics" ) );
+
+    private static volatile boolean _enabled = true;
+    private static volatile CallSampler _sampler;
+
+    private final String _keyspace;
+    private final String _columnFamily;
+    private final Map<Operation, OperationMetrics> _operations = new EnumMap<Operation, OperationMetrics>( Operation.class );
+
+    private HelenaMetrics( final String keyspace, final String columnFamily ) {
+        _keyspace = keyspace;
+        _columnFamily = columnFamily;
+        for ( final Operation operation : Operation.values() ) {
+            _operations.put( operation, new OperationMetrics( keyspace, columnFamily, operation ) );
+        }
+    }
+
+    static HelenaMetrics forColumnFamily( final String keyspace, final String columnFamily ) {
+        final String name = keyspace + "/" + columnFamily;
+        HelenaMetrics metrics = COLUMN_FAMILIES.get( name );
+        if ( metrics == null ) {
+            final HelenaMetrics created = new HelenaMetrics( keyspace, columnFamily );
+            metrics = COLUMN_FAMILIES.putIfAbsent( name, created );
+            if ( metrics == null ) {
+                metrics = created;
+                metrics.register();
+            }
+        }
+        return metrics;
+    }
+
+    private void register() {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for ( final OperationMetrics operation : _operations.values() ) {
+            try {
+                final ObjectName name = new ObjectName( "org.thiesen.helenaorm:type=Operations,keyspace=" + quote( _keyspace )
+                        + ",columnFamily=" + quote( _columnFamily ) + ",operation=" + operation.getOperation().getName() );
+                if ( !server.isRegistered( name ) ) {
+                    server.registerMBean( operation, name );
+                }
+            } catch ( final JMException e ) {
+                LOG.warn( "Could not register metrics of " + operation.getOperation().getName() + " on " + _columnFamily, e );
+            }
+        }
+    }
+
+    private static String quote( final String value ) {
+        for ( int i = 0; i < value.length(); i++ ) {
+            if ( ",=:*?\"\n".indexOf( value.charAt( i ) ) >= 0 ) {
+                return ObjectName.quote( value );
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Starts timing a call on the current thread. While a call is running, calls started by the same
+     * thread are part of it and not recorded on their own.
+     */
+    MetricsCall start( final Operation operation ) {
+        final boolean enabled = _enabled;
+        final CallSampler sampler = _sampler;
+        if ( ( !enabled && sampler == null ) || MetricsCall.isRunning() ) {
+            return MetricsCall.NONE;
+        }
+        return MetricsCall.start( _operations.get( operation ), enabled, sampler );
+    }
+
+    public String getKeyspace() {
+        return _keyspace;
+    }
+
+    public String getColumnFamily() {
+        return _columnFamily;
+    }
+
+    public OperationMetrics getOperation( final Operation operation ) {
+        return _operations.get( operation );
+    }
+
+    public Collection<OperationMetrics> getOperations() {
+        return Collections.unmodifiableCollection( _operations.values() );
+    }
+
+    /**
+     * @return the metrics of every operation on every column family that has been called at least once
+     */
+    public static List<OperationMetrics> getAll() {
+        final List<OperationMetrics> result = new ArrayList<OperationMetrics>();
+        for ( final HelenaMetrics metrics : COLUMN_FAMILIES.values() ) {
+            for ( final OperationMetrics operation : metrics._operations.values() ) {
+                if ( operation.getCalls() > 0 ) {
+                    result.add( operation );
+                }
+            }
+        }
+        return result;
+    }
+
+    public static boolean isEnabled() {
+        return _enabled;
+    }
+
+    public static void setEnabled( final boolean enabled ) {
+        _enabled = enabled;
+    }
+
+    public static CallSampler getSampler() {
+        return _sampler;
+    }
+
+    /**
+     * @param sampler checks every call on every column family, null switches sampling off
+     */
+    public static void setSampler( final CallSampler sampler ) {
+        _sampler = sampler;
+    }
+
+    /**
+     * Passes the metrics of all column families to the reporter every period, until it is removed.
+     */
+    public static void addReporter( final MetricsReporter reporter, final long period, final TimeUnit unit ) {
+        if ( REPORTERS.containsKey( reporter ) ) {
+            throw new IllegalArgumentException( "Reporter " + reporter + " has already been added" );
+        }
+        REPORTERS.put( reporter, REPORTING.scheduleAtFixedRate( new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    reporter.report( getAll() );
+                } catch ( final RuntimeException e ) {
+                    LOG.warn( "Metrics reporter " + reporter + " failed", e );
+                }
+            }
+        }, period, period, unit ) );
+    }
+
+    public static void removeReporter( final MetricsReporter reporter ) {
+        final ScheduledFuture<?> future = REPORTERS.remove( reporter );
+        if ( future != null ) {
+            future.cancel( false );
+        }
+    }
+
+}
@@ -28,9 +28,11 @@ package org.thiesen.helenaorm;
 import java.net.URI;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.thiesen.helenaorm.codecs.CompactObjectCodec;
 import org.thiesen.helenaorm.mappings.IntegerTypeMapping;
 import org.thiesen.helenaorm.mappings.LongTypeMapping;
 import org.thiesen.helenaorm.mappings.StringTypeMapping;
@@ -38,6 +40,7 @@ import org.thiesen.helenaorm.mappings.URITypeMapping;
 import org.thiesen.helenaorm.mappings.UUIDTypeMapping;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
 
 public class HelenaORMDAOFactory {
 	
@@ -52,26 +55,22 @@ public class HelenaORMDAOFactory {
             URI.class, new URITypeMapping()
     );
     
-    private final String _hostname;
-    private final int _port;
-	private String[] _nodes = null;
+    private final HelenaClientPool _clientPool;
     
     private final SerializeUnknownClasses _serializationPolicy;
     private final ImmutableMap<Class<?>, TypeMapping<?>> _typeMappings;
+    private ObjectCodec _objectCodec = new CompactObjectCodec();
+    private EnumEncoding _enumEncoding = EnumEncoding.NAME;
+    private TimestampProvider _timestampProvider = MicrosecondTimestampProvider.getInstance();
+    private final Map<Class<?>, RowCacheConfig> _rowCacheConfigs = new ConcurrentHashMap<Class<?>, RowCacheConfig>();
 
-    private HelenaORMDAOFactory( final String hostname, final int port,
-            final SerializeUnknownClasses serializationPolicy, final Map<Class<?>, TypeMapping<?>> mappings ) {
-        _hostname = hostname;
-        _port = port;
+    private HelenaORMDAOFactory( final HelenaClientPool clientPool, final SerializeUnknownClasses serializationPolicy,
+            final Map<Class<?>, TypeMapping<?>> mappings ) {
+        _clientPool = clientPool;
         _serializationPolicy = serializationPolicy;
-        _typeMappings = ImmutableMap.<Class<?>, TypeMapping<?>>builder().putAll( DEFAULT_TYPES ).putAll(  mappings ).build();
-    }
-    
-    private HelenaORMDAOFactory( final String[] nodes,
-            final SerializeUnknownClasses serializationPolicy, final Map<Class<?>, TypeMapping<?>> mappings ) {
-    	
-    	this(null, 0, serializationPolicy, mappings);
-    	this._nodes = nodes;
+        final Map<Class<?>, TypeMapping<?>> typeMappings = Maps.newHashMap( DEFAULT_TYPES );
+        typeMappings.putAll( mappings );
+        _typeMappings = ImmutableMap.copyOf( typeMappings );
     }
 
     public static HelenaORMDAOFactory withConfig( final String hostname, final int port ) {
@@ -80,12 +79,18 @@ public class HelenaORMDAOFactory {
     
     public static HelenaORMDAOFactory withConfig( final String hostname, final int port,
             final SerializeUnknownClasses serializationPolicy ) {
-        return new HelenaORMDAOFactory( hostname, port, serializationPolicy, ImmutableMap.<Class<?>, TypeMapping<?>>of() );
+        return withConfig( hostname, port, serializationPolicy, ImmutableMap.<Class<?>, TypeMapping<?>>of() );
     }
     
     public static HelenaORMDAOFactory withConfig( final String hostname, final int port,
             final SerializeUnknownClasses serializationPolicy, final Map<Class<?>,TypeMapping<?>> mappings ) {
-        return new HelenaORMDAOFactory( hostname, port, serializationPolicy, mappings );
+        return withConfig( hostname, port, serializationPolicy, mappings, new ClientPoolConfig() );
+    }
+
+    public static HelenaORMDAOFactory withConfig( final String hostname, final int port,
+            final SerializeUnknownClasses serializationPolicy, final Map<Class<?>,TypeMapping<?>> mappings,
+            final ClientPoolConfig poolConfig ) {
+        return withConfig( HelenaClientPool.toHosts( hostname, port ), serializationPolicy, mappings, poolConfig );
     }
     
 	public static HelenaORMDAOFactory withConfig(final String[] nodes) {
@@ -94,28 +99,94 @@ public class HelenaORMDAOFactory {
 
 	public static HelenaORMDAOFactory withConfig(final String[] nodes,
 			SerializeUnknownClasses serializationPolicy) {
-        return new HelenaORMDAOFactory(nodes, serializationPolicy, ImmutableMap.<Class<?>, TypeMapping<?>>of());
+        return withConfig(nodes, serializationPolicy, ImmutableMap.<Class<?>, TypeMapping<?>>of());
 	}
 
 	public static HelenaORMDAOFactory withConfig(final String[] nodes,
 			SerializeUnknownClasses serializationPolicy, final Map<Class<?>,TypeMapping<?>> mappings) {
-        return new HelenaORMDAOFactory(nodes, serializationPolicy, mappings);
+        return withConfig(nodes, serializationPolicy, mappings, new ClientPoolConfig());
 	}
 
+	public static HelenaORMDAOFactory withConfig(final String[] nodes,
+			SerializeUnknownClasses serializationPolicy, final Map<Class<?>,TypeMapping<?>> mappings,
+			final ClientPoolConfig poolConfig) {
+        return new HelenaORMDAOFactory(HelenaClientPool.create(nodes, poolConfig), serializationPolicy, mappings);
+	}
+
+    /**
+     * @return a factory whose DAOs run their commands on the given pool
+     */
+    static HelenaORMDAOFactory withClientPool( final HelenaClientPool clientPool, final SerializeUnknownClasses serializationPolicy,
+            final Map<Class<?>,TypeMapping<?>> mappings ) {
+        return new HelenaORMDAOFactory( clientPool, serializationPolicy, mappings );
+    }
+
     public <T> HelenaDAO<T> makeDaoForClass( final Class<T> clz ) {
-    	if (this._nodes == null) {
-    		return new HelenaDAO<T>( clz, _hostname, _port, _serializationPolicy, _typeMappings );
-    	} else {
-    		return new HelenaDAO<T>( clz, _nodes, _serializationPolicy, _typeMappings );
-    	}
+        return new HelenaDAO<T>( clz, _clientPool, makeTypeConverter(), _rowCacheConfigs.get( clz ), _timestampProvider );
     }
 
 	public <T> HelenaColumnDAO<T> makeColumnDaoForClass( final Class<T> clz ) {
-    	if (this._nodes == null) {
-    		return new HelenaColumnDAO<T>( clz, _hostname, _port, _serializationPolicy, _typeMappings );
-    	} else {
-    		return new HelenaColumnDAO<T>( clz, _nodes, _serializationPolicy, _typeMappings );
-    	}
+        return new HelenaColumnDAO<T>( clz, _clientPool, makeTypeConverter(), _timestampProvider );
 	}
 
+    private TypeConverter makeTypeConverter() {
+        return new TypeConverter( _typeMappings, _serializationPolicy, _objectCodec, _enumEncoding );
+    }
+
+    /**
+     * Sets the codec used for values without a type mapping in DAOs created afterwards. Defaults to
+     * {@link CompactObjectCodec}, use {@link org.thiesen.helenaorm.codecs.JavaSerializationCodec} to keep
+     * writing plain Java serialization. Values written with Java serialization stay readable either way.
+     */
+    public HelenaORMDAOFactory setObjectCodec( final ObjectCodec objectCodec ) {
+        if ( objectCodec == null ) {
+            throw new IllegalArgumentException( "objectCodec must not be null" );
+        }
+        _objectCodec = objectCodec;
+        return this;
+    }
+
+    /**
+     * Configures the row cache of DAOs created afterwards for the given class, overriding the cache
+     * settings of its {@link org.thiesen.helenaorm.annotations.HelenaBean} annotation. Pass a config
+     * without limits to disable the cache.
+     */
+    public HelenaORMDAOFactory setRowCacheConfig( final Class<?> clz, final RowCacheConfig config ) {
+        if ( config == null ) {
+            throw new IllegalArgumentException( "config must not be null" );
+        }
+        _rowCacheConfigs.put( clz, config );
+        return this;
+    }
+
+    /**
+     * Sets the clock of DAOs created afterwards. Defaults to {@link MicrosecondTimestampProvider#getInstance()}.
+     */
+    public HelenaORMDAOFactory setTimestampProvider( final TimestampProvider timestampProvider ) {
+        if ( timestampProvider == null ) {
+            throw new IllegalArgumentException( "timestampProvider must not be null" );
+        }
+        _timestampProvider = timestampProvider;
+        return this;
+    }
+
+    /**
+     * Sets how enum properties are written by DAOs created afterwards. Defaults to
+     * {@link EnumEncoding#NAME}; values in either encoding can always be read.
+     */
+    public HelenaORMDAOFactory setEnumEncoding( final EnumEncoding enumEncoding ) {
+        if ( enumEncoding == null ) {
+            throw new IllegalArgumentException( "enumEncoding must not be null" );
+        }
+        _enumEncoding = enumEncoding;
+        return this;
+    }
+
+    /**
+     * @return the connection pool shared by all DAOs of this factory, e.g. to monitor its usage
+     */
+    public HelenaClientPool getClientPool() {
+        return _clientPool;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,128 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free histogram of durations in nanoseconds. Values are counted in buckets whose width grows
+ * with the value, each power of two is split into 32 buckets, so every recorded value is known to
+ * within about 3%. Durations above 2^40 nanoseconds, about 18 minutes, are counted in the last bucket.
+ *
+ * Recording is a few atomic increments and does not allocate. Reading a percentile walks all buckets
+ * without stopping writers, so it reflects the values recorded roughly at the time of the call.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = ( MAX_EXPONENT - SUB_BUCKET_BITS + 2 ) * SUB_BUCKETS;
+
+    private final AtomicLongArray _counts = new AtomicLongArray( BUCKETS );
+    private final AtomicLong _count = new AtomicLong();
+    private final AtomicLong _total = new AtomicLong();
+    private final AtomicLong _max = new AtomicLong();
+
+    void record( final long nanos ) {
+        final long value = Math.max( 0, nanos );
+        _counts.incrementAndGet( indexOf( value ) );
+        _count.incrementAndGet();
+        _total.addAndGet( value );
+        long max = _max.get();
+        while ( value > max && !_max.compareAndSet( max, value ) ) {
+            max = _max.get();
+        }
+    }
+
+    static int indexOf( final long value ) {
+        if ( value < SUB_BUCKETS ) {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros( value );
+        if ( exponent > MAX_EXPONENT ) {
+            return BUCKETS - 1;
+        }
+        final int subBucket = (int) ( value >>> ( exponent - SUB_BUCKET_BITS ) ) & ( SUB_BUCKETS - 1 );
+        return ( exponent - SUB_BUCKET_BITS + 1 ) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return the largest value counted in the bucket
+     */
+    static long highestValueOf( final int index ) {
+        if ( index < SUB_BUCKETS ) {
+            return index;
+        }
+        final int shift = index / SUB_BUCKETS - 1;
+        final long lowest = (long) ( SUB_BUCKETS + index % SUB_BUCKETS ) << shift;
+        return lowest + ( 1L << shift ) - 1;
+    }
+
+    public long getCount() {
+        return _count.get();
+    }
+
+    public long getMax( final TimeUnit unit ) {
+        return unit.convert( _max.get(), TimeUnit.NANOSECONDS );
+    }
+
+    public double getMean( final TimeUnit unit ) {
+        final long count = _count.get();
+        return count == 0 ? 0 : (double) _total.get() / count / unit.toNanos( 1 );
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the value that percentile of all recorded values is at or below, 0 if nothing was recorded
+     */
+    public long getPercentile( final double percentile, final TimeUnit unit ) {
+        if ( percentile < 0 || percentile > 100 ) {
+            throw new IllegalArgumentException( "Percentile must be between 0 and 100, was " + percentile );
+        }
+        final long[] counts = new long[BUCKETS];
+        long total = 0;
+        for ( int i = 0; i < BUCKETS; i++ ) {
+            counts[i] = _counts.get( i );
+            total += counts[i];
+        }
+        if ( total == 0 ) {
+            return 0;
+        }
+        final long rank = Math.max( 1, (long) Math.ceil( percentile / 100 * total ) );
+        long seen = 0;
+        for ( int i = 0; i < BUCKETS; i++ ) {
+            seen += counts[i];
+            if ( seen >= rank ) {
+                return unit.convert( Math.min( highestValueOf( i ), _max.get() ), TimeUnit.NANOSECONDS );
+            }
+        }
+        return unit.convert( _max.get(), TimeUnit.NANOSECONDS );
+    }
+
+}
@@ -25,43 +25,102 @@
  */
 package org.thiesen.helenaorm;
 
-import java.util.Collections;
-import java.util.Map;
-import java.util.Set;
-
-import com.google.common.collect.Maps;
+import java.util.Arrays;
+import java.util.List;
 
+import org.apache.cassandra.thrift.Column;
 
+/**
+ * The column values of one bean, stored by the ordinal of the column in the bean mapping. The
+ * columns handed out by {@link #toColumns(long)} are created once with the pre-encoded column names
+ * and refilled on every call, so a buffer that is reused for many objects, see
+ * {@link HelenaDAO#insert(Object, long)}, only allocates the value bytes.
+ *
+ * Instances are not thread safe.
+ */
 class MarshalledObject {
 
-    private byte[] _key;
+    private final List<PropertyMapping> _properties;
+    private final byte[][] _values;
+
+    private String _key;
     private byte[] _superColumn;
-    private final Map<String, byte[]> _values = Maps.newHashMap();
-    
-    static MarshalledObject create() {
-        return new MarshalledObject();
+    private Column[] _columns;
+    private List<Column> _columnList;
+    private boolean _inUse;
+
+    MarshalledObject( final List<PropertyMapping> properties ) {
+        _properties = properties;
+        _values = new byte[properties.size()][];
     }
 
-    void setKey( final byte[] value ) {
-        _key = value;
-        
+    /**
+     * Marks a reused buffer as taken.
+     * @return false if the buffer is already taken, e.g. by an insert further up the stack
+     */
+    boolean acquire() {
+        if ( _inUse ) {
+            return false;
+        }
+        _inUse = true;
+        return true;
     }
 
-    void addValue( final String name, final byte[] value ) {
-        if ( _values.put( name, value ) != null ) {
-            throw new HelenaRuntimeException("Property with name " + name + " had already" +
-            		" a value, overwriting is illegal");
+    /**
+     * Drops all references to the values of the last object and marks the buffer as free.
+     */
+    void release() {
+        _key = null;
+        _superColumn = null;
+        Arrays.fill( _values, null );
+        if ( _columns != null ) {
+            for ( final Column column : _columns ) {
+                column.setValue( null );
+            }
         }
-        
+        _inUse = false;
+    }
+
+    void setKey( final String value ) {
+        _key = value;
     }
 
-    byte[] getKey() {
+    String getKey() {
         return _key;
     }
 
-    Set<Map.Entry<String,byte[]>> getEntries() {
-        return Collections.unmodifiableSet( _values.entrySet() );
-        
+    /**
+     * @param index the ordinal of the column in {@link BeanMapping#getColumns()}
+     */
+    void setValue( final int index, final byte[] value ) {
+        _values[index] = value;
+    }
+
+    byte[] getValue( final int index ) {
+        return _values[index];
+    }
+
+    int size() {
+        return _values.length;
+    }
+
+    /**
+     * @return the columns of all values, valid until the values of this object are changed or the
+     * columns are requested again
+     */
+    List<Column> toColumns( final long timestamp ) {
+        if ( _columns == null ) {
+            _columns = new Column[_values.length];
+            for ( int i = 0; i < _columns.length; i++ ) {
+                _columns[i] = new Column( _properties.get( i ).getColumnName(), null, timestamp );
+            }
+            _columnList = Arrays.asList( _columns );
+        }
+        for ( int i = 0; i < _columns.length; i++ ) {
+            _columns[i].setValue( _values[i] );
+            _columns[i].setTimestamp( timestamp );
+        }
+        return _columnList;
     }
 
     public void setSuperColumn( final byte[] superColumn ) {
@@ -76,5 +135,4 @@ class MarshalledObject {
         return _superColumn != null;
     }
 
-
 }
@@ -0,0 +1,173 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm;
+
+import org.apache.cassandra.thrift.Column;
+
+/**
+ * Times a single DAO call on the thread that started it. The DAOs mark the requests to Cassandra
+ * with {@link #beginNetwork()} and {@link #endNetwork()}, everything before the first request counts
+ * as marshalling and everything after the last response as unmarshalling. When the call ends it is
+ * recorded and, if it crosses one of the thresholds of the {@link CallSampler}, sampled.
+ */
+class MetricsCall {
+
+    private static final ThreadLocal<MetricsCall> CURRENT = new ThreadLocal<MetricsCall>();
+
+    /**
+     * Stands in when metrics and sampling are disabled or a call is already running, all methods do nothing.
+     */
+    static final MetricsCall NONE = new MetricsCall( null, false, null );
+
+    private final OperationMetrics _metrics;
+    private final boolean _record;
+    private final CallSampler _sampler;
+    private final long _start;
+
+    private int _networkDepth;
+    private long _networkStart;
+    private long _firstNetworkStart = -1;
+    private long _lastNetworkEnd;
+    private long _networkNanos;
+    private long _rows;
+    private long _keys;
+    private long _columns;
+    private long _bytes;
+    private byte[] _largestColumnName;
+    private long _largestColumnBytes;
+    private boolean _failed;
+
+    private MetricsCall( final OperationMetrics metrics, final boolean record, final CallSampler sampler ) {
+        _metrics = metrics;
+        _record = record;
+        _sampler = sampler;
+        _start = metrics == null ? 0 : System.nanoTime();
+    }
+
+    /**
+     * @param record whether the call is added to the metrics
+     * @param sampler checks the call when it ends, may be null
+     */
+    static MetricsCall start( final OperationMetrics metrics, final boolean record, final CallSampler sampler ) {
+        final MetricsCall call = new MetricsCall( metrics, record, sampler );
+        CURRENT.set( call );
+        return call;
+    }
+
+    static boolean isRunning() {
+        return CURRENT.get() != null;
+    }
+
+    /**
+     * @return the call running on this thread, or {@link #NONE}
+     */
+    static MetricsCall current() {
+        final MetricsCall call = CURRENT.get();
+        return call == null ? NONE : call;
+    }
+
+    void beginNetwork() {
+        if ( _metrics == null || _networkDepth++ > 0 ) {
+            return;
+        }
+        _networkStart = System.nanoTime();
+        if ( _firstNetworkStart < 0 ) {
+            _firstNetworkStart = _networkStart;
+        }
+    }
+
+    void endNetwork() {
+        if ( _metrics == null || --_networkDepth > 0 ) {
+            return;
+        }
+        _lastNetworkEnd = System.nanoTime();
+        _networkNanos += _lastNetworkEnd - _networkStart;
+    }
+
+    void addRows( final long rows ) {
+        if ( _metrics == null ) {
+            return;
+        }
+        _rows += rows;
+    }
+
+    /**
+     * Counts keys that were requested, only needed where fewer rows than keys may be returned.
+     */
+    void addKeys( final long keys ) {
+        if ( _metrics == null ) {
+            return;
+        }
+        _keys += keys;
+    }
+
+    void addColumns( final Iterable<Column> columns ) {
+        if ( _metrics == null || columns == null ) {
+            return;
+        }
+        for ( final Column column : columns ) {
+            final long bytes = column.getName().length + ( column.getValue() == null ? 0 : column.getValue().length );
+            _columns++;
+            _bytes += bytes;
+            if ( bytes > _largestColumnBytes ) {
+                _largestColumnBytes = bytes;
+                _largestColumnName = column.getName();
+            }
+        }
+    }
+
+    void failed() {
+        _failed = true;
+    }
+
+    /**
+     * Records the call, must be called exactly once in a finally block that directly follows
+     * {@link HelenaMetrics#start(Operation)}, otherwise a call that is never ended silences all later
+     * calls on the thread.
+     */
+    void end() {
+        if ( _metrics == null ) {
+            return;
+        }
+        if ( CURRENT.get() == this ) {
+            CURRENT.remove();
+        }
+        final long end = System.nanoTime();
+        if ( _record ) {
+            if ( _firstNetworkStart < 0 ) {
+                _metrics.record( end - _start, end - _start, 0, 0, _rows, _bytes, _failed );
+            } else {
+                _metrics.record( end - _start, _firstNetworkStart - _start, _networkNanos, end - _lastNetworkEnd, _rows, _bytes, _failed );
+            }
+        }
+        final long keys = Math.max( _keys, _rows );
+        if ( _sampler != null && _sampler.isSampled( end - _start, _bytes, keys ) ) {
+            _sampler.offer( new CallSample( _metrics.getKeyspace(), _metrics.getColumnFamily(), _metrics.getOperation(),
+                    end - _start, keys, _columns, _bytes, _largestColumnName, _largestColumnBytes, _failed ) );
+        }
+    }
+
+}
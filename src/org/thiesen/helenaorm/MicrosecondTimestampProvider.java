@@ -0,0 +1,57 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Microseconds since the epoch, the resolution Hector uses by default. Timestamps are strictly
+ * increasing within one instance, so two writes in the same microsecond, or while the system clock
+ * is set back, never tie. {@link #getInstance()} is shared by all factories of a JVM.
+ */
+public class MicrosecondTimestampProvider implements TimestampProvider {
+
+    private static final MicrosecondTimestampProvider INSTANCE = new MicrosecondTimestampProvider();
+
+    private final AtomicLong _last = new AtomicLong();
+
+    public static MicrosecondTimestampProvider getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public long nextTimestamp() {
+        final long now = System.currentTimeMillis() * 1000;
+        while ( true ) {
+            final long last = _last.get();
+            final long next = now > last ? now : last + 1;
+            if ( _last.compareAndSet( last, next ) ) {
+                return next;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,179 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters and latency histograms of one operation on one column family. The time of every call is
+ * split into the marshal phase before the first request to Cassandra, the network phase, which
+ * includes borrowing a connection from the pool, and the unmarshal phase after the last response.
+ * Calls that send several requests spend the time between them in none of the phases.
+ */
+public final class OperationMetrics implements OperationMetricsMBean {
+
+    private final String _keyspace;
+    private final String _columnFamily;
+    private final Operation _operation;
+
+    private final AtomicLong _errors = new AtomicLong();
+    private final AtomicLong _rows = new AtomicLong();
+    private final AtomicLong _bytes = new AtomicLong();
+    private final LatencyHistogram _latency = new LatencyHistogram();
+    private final LatencyHistogram _marshalLatency = new LatencyHistogram();
+    private final LatencyHistogram _networkLatency = new LatencyHistogram();
+    private final LatencyHistogram _unmarshalLatency = new LatencyHistogram();
+
+    OperationMetrics( final String keyspace, final String columnFamily, final Operation operation ) {
+        _keyspace = keyspace;
+        _columnFamily = columnFamily;
+        _operation = operation;
+    }
+
+    void record( final long nanos, final long marshalNanos, final long networkNanos, final long unmarshalNanos,
+            final long rows, final long bytes, final boolean failed ) {
+        _latency.record( nanos );
+        _marshalLatency.record( marshalNanos );
+        _networkLatency.record( networkNanos );
+        _unmarshalLatency.record( unmarshalNanos );
+        if ( rows > 0 ) {
+            _rows.addAndGet( rows );
+        }
+        if ( bytes > 0 ) {
+            _bytes.addAndGet( bytes );
+        }
+        if ( failed ) {
+            _errors.incrementAndGet();
+        }
+    }
+
+    public String getKeyspace() {
+        return _keyspace;
+    }
+
+    public String getColumnFamily() {
+        return _columnFamily;
+    }
+
+    public Operation getOperation() {
+        return _operation;
+    }
+
+    /**
+     * @return the latency of whole calls
+     */
+    public LatencyHistogram getLatency() {
+        return _latency;
+    }
+
+    public LatencyHistogram getMarshalLatency() {
+        return _marshalLatency;
+    }
+
+    public LatencyHistogram getNetworkLatency() {
+        return _networkLatency;
+    }
+
+    public LatencyHistogram getUnmarshalLatency() {
+        return _unmarshalLatency;
+    }
+
+    @Override
+    public long getCalls() {
+        return _latency.getCount();
+    }
+
+    @Override
+    public long getErrors() {
+        return _errors.get();
+    }
+
+    /**
+     * @return the number of rows read or written by all calls
+     */
+    @Override
+    public long getRows() {
+        return _rows.get();
+    }
+
+    /**
+     * @return the size of the column names and values read or written by all calls
+     */
+    @Override
+    public long getBytes() {
+        return _bytes.get();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        return _latency.getMean( TimeUnit.MICROSECONDS );
+    }
+
+    @Override
+    public long getP50Micros() {
+        return _latency.getPercentile( 50, TimeUnit.MICROSECONDS );
+    }
+
+    @Override
+    public long getP99Micros() {
+        return _latency.getPercentile( 99, TimeUnit.MICROSECONDS );
+    }
+
+    @Override
+    public long getP999Micros() {
+        return _latency.getPercentile( 99.9, TimeUnit.MICROSECONDS );
+    }
+
+    @Override
+    public long getMaxMicros() {
+        return _latency.getMax( TimeUnit.MICROSECONDS );
+    }
+
+    @Override
+    public long getMarshalP99Micros() {
+        return _marshalLatency.getPercentile( 99, TimeUnit.MICROSECONDS );
+    }
+
+    @Override
+    public long getNetworkP99Micros() {
+        return _networkLatency.getPercentile( 99, TimeUnit.MICROSECONDS );
+    }
+
+    @Override
+    public long getUnmarshalP99Micros() {
+        return _unmarshalLatency.getPercentile( 99, TimeUnit.MICROSECONDS );
+    }
+
+    @Override
+    public String toString() {
+        return _keyspace + "/" + _columnFamily + " " + _operation.getName() + " [calls=" + getCalls() + ", errors=" + getErrors()
+                + ", rows=" + getRows() + ", bytes=" + getBytes() + ", p50=" + getP50Micros() + "us, p99=" + getP99Micros()
+                + "us, max=" + getMaxMicros() + "us, marshal p99=" + getMarshalP99Micros() + "us, network p99="
+                + getNetworkP99Micros() + "us, unmarshal p99=" + getUnmarshalP99Micros() + "us]";
+    }
+
+}
@@ -0,0 +1,231 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm;
+
+import java.lang.reflect.Field;
+
+/**
+ * Reads and writes a primitive field with {@link Field#getLong(Object)} and its siblings and encodes
+ * the value with the primitive codec of its type mapping, so no value is boxed on the way.
+ */
+abstract class PrimitiveAccessor {
+
+    protected final Field _field;
+
+    private PrimitiveAccessor( final Field field ) {
+        _field = field;
+    }
+
+    /**
+     * @param mapping the mapping of the wrapper type of the field, may be null
+     * @return the accessor, or null if the field is not primitive or the mapping has no matching codec
+     */
+    static PrimitiveAccessor create( final Field field, final TypeMapping<?> mapping ) {
+        final Class<?> type = field.getType();
+        if ( type == long.class && mapping instanceof LongCodec ) {
+            return new LongAccessor( field, (LongCodec) mapping );
+        }
+        if ( type == int.class && mapping instanceof IntCodec ) {
+            return new IntAccessor( field, (IntCodec) mapping );
+        }
+        if ( type == double.class && mapping instanceof DoubleCodec ) {
+            return new DoubleAccessor( field, (DoubleCodec) mapping );
+        }
+        if ( type == float.class && mapping instanceof FloatCodec ) {
+            return new FloatAccessor( field, (FloatCodec) mapping );
+        }
+        if ( type == boolean.class && mapping instanceof BooleanCodec ) {
+            return new BooleanAccessor( field, (BooleanCodec) mapping );
+        }
+        return null;
+    }
+
+    /**
+     * @return the wrapper class of a primitive type, other types unchanged
+     */
+    static Class<?> wrap( final Class<?> type ) {
+        if ( !type.isPrimitive() ) {
+            return type;
+        }
+        if ( type == long.class ) {
+            return Long.class;
+        }
+        if ( type == int.class ) {
+            return Integer.class;
+        }
+        if ( type == double.class ) {
+            return Double.class;
+        }
+        if ( type == float.class ) {
+            return Float.class;
+        }
+        if ( type == boolean.class ) {
+            return Boolean.class;
+        }
+        if ( type == short.class ) {
+            return Short.class;
+        }
+        if ( type == byte.class ) {
+            return Byte.class;
+        }
+        if ( type == char.class ) {
+            return Character.class;
+        }
+        return Void.class;
+    }
+
+    byte[] read( final Object bean ) {
+        try {
+            return encode( bean );
+        } catch ( final IllegalAccessException e ) {
+            throw new HelenaRuntimeException( e );
+        }
+    }
+
+    /**
+     * Leaves the field unchanged if the stored value is empty, i.e. was written for a null wrapper.
+     */
+    void write( final Object bean, final byte[] value ) {
+        if ( value == null || value.length == 0 ) {
+            return;
+        }
+        try {
+            decode( bean, value );
+        } catch ( final IllegalAccessException e ) {
+            throw new HelenaRuntimeException( e );
+        }
+    }
+
+    protected abstract byte[] encode( Object bean ) throws IllegalAccessException;
+
+    protected abstract void decode( Object bean, byte[] value ) throws IllegalAccessException;
+
+    private static final class LongAccessor extends PrimitiveAccessor {
+
+        private final LongCodec _codec;
+
+        LongAccessor( final Field field, final LongCodec codec ) {
+            super( field );
+            _codec = codec;
+        }
+
+        @Override
+        protected byte[] encode( final Object bean ) throws IllegalAccessException {
+            return _codec.encodeLong( _field.getLong( bean ) );
+        }
+
+        @Override
+        protected void decode( final Object bean, final byte[] value ) throws IllegalAccessException {
+            _field.setLong( bean, _codec.decodeLong( value ) );
+        }
+
+    }
+
+    private static final class IntAccessor extends PrimitiveAccessor {
+
+        private final IntCodec _codec;
+
+        IntAccessor( final Field field, final IntCodec codec ) {
+            super( field );
+            _codec = codec;
+        }
+
+        @Override
+        protected byte[] encode( final Object bean ) throws IllegalAccessException {
+            return _codec.encodeInt( _field.getInt( bean ) );
+        }
+
+        @Override
+        protected void decode( final Object bean, final byte[] value ) throws IllegalAccessException {
+            _field.setInt( bean, _codec.decodeInt( value ) );
+        }
+
+    }
+
+    private static final class DoubleAccessor extends PrimitiveAccessor {
+
+        private final DoubleCodec _codec;
+
+        DoubleAccessor( final Field field, final DoubleCodec codec ) {
+            super( field );
+            _codec = codec;
+        }
+
+        @Override
+        protected byte[] encode( final Object bean ) throws IllegalAccessException {
+            return _codec.encodeDouble( _field.getDouble( bean ) );
+        }
+
+        @Override
+        protected void decode( final Object bean, final byte[] value ) throws IllegalAccessException {
+            _field.setDouble( bean, _codec.decodeDouble( value ) );
+        }
+
+    }
+
+    private static final class FloatAccessor extends PrimitiveAccessor {
+
+        private final FloatCodec _codec;
+
+        FloatAccessor( final Field field, final FloatCodec codec ) {
+            super( field );
+            _codec = codec;
+        }
+
+        @Override
+        protected byte[] encode( final Object bean ) throws IllegalAccessException {
+            return _codec.encodeFloat( _field.getFloat( bean ) );
+        }
+
+        @Override
+        protected void decode( final Object bean, final byte[] value ) throws IllegalAccessException {
+            _field.setFloat( bean, _codec.decodeFloat( value ) );
+        }
+
+    }
+
+    private static final class BooleanAccessor extends PrimitiveAccessor {
+
+        private final BooleanCodec _codec;
+
+        BooleanAccessor( final Field field, final BooleanCodec codec ) {
+            super( field );
+            _codec = codec;
+        }
+
+        @Override
+        protected byte[] encode( final Object bean ) throws IllegalAccessException {
+            return _codec.encodeBoolean( _field.getBoolean( bean ) );
+        }
+
+        @Override
+        protected void decode( final Object bean, final byte[] value ) throws IllegalAccessException {
+            _field.setBoolean( bean, _codec.decodeBoolean( value ) );
+        }
+
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * The properties a read fills in. Only the columns of these properties are read from Cassandra, all
+ * other properties keep the values the bean's constructor gives them. The key is always set.
+ *
+ * Projections are immutable and can be kept in constants, DAOs cache what they derive from them.
+ */
+public final class Projection {
+
+    private final ImmutableSet<String> _properties;
+
+    private Projection( final ImmutableSet<String> properties ) {
+        if ( properties.isEmpty() ) {
+            throw new IllegalArgumentException( "A projection needs at least one property" );
+        }
+        _properties = properties;
+    }
+
+    public static Projection of( final String... properties ) {
+        return of( Arrays.asList( properties ) );
+    }
+
+    public static Projection of( final Iterable<String> properties ) {
+        return new Projection( ImmutableSet.copyOf( properties ) );
+    }
+
+    public Set<String> getProperties() {
+        return _properties;
+    }
+
+    @Override
+    public int hashCode() {
+        return _properties.hashCode();
+    }
+
+    @Override
+    public boolean equals( final Object obj ) {
+        return obj instanceof Projection && _properties.equals( ( (Projection) obj )._properties );
+    }
+
+    @Override
+    public String toString() {
+        return "Projection" + _properties;
+    }
+
+}
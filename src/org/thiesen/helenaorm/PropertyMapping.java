@@ -0,0 +1,179 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * A single bean property with its accessors, column name and type mapping
+ * resolved once, so that marshalling does not need to look anything up by name.
+ * Primitive properties are mapped with the mapping of their wrapper type, and read and written
+ * through their field without boxing if the bean allows field access and the mapping has a
+ * primitive codec.
+ */
+class PropertyMapping {
+
+    private final String _name;
+    private final byte[] _columnName;
+    private final Class<?> _type;
+    private final Class<?> _valueType;
+    private final Method _readMethod;
+    private final Method _writeMethod;
+    private final TypeMapping<?> _typeMapping;
+    private final TypeConverter _typeConverter;
+    private final boolean _deleteIfNull;
+    private final PrimitiveAccessor _primitiveAccessor;
+
+    /**
+     * @param field the field backing the property, used instead of the accessors for primitives, may be null
+     */
+    PropertyMapping( final PropertyDescriptor descriptor, final TypeConverter typeConverter, final boolean deleteIfNull,
+            final Field field ) {
+        _name = descriptor.getName();
+        _columnName = typeConverter.stringToBytes( _name );
+        _readMethod = makeAccessible( descriptor.getReadMethod() );
+        _writeMethod = makeAccessible( descriptor.getWriteMethod() );
+        _type = _readMethod != null ? _readMethod.getReturnType() : descriptor.getPropertyType();
+        _valueType = PrimitiveAccessor.wrap( _type );
+        _typeMapping = typeConverter.getExactTypeMapping( _valueType );
+        _typeConverter = typeConverter;
+        _deleteIfNull = deleteIfNull;
+        _primitiveAccessor = field != null && field.getType() == _type ? PrimitiveAccessor.create( makeAccessible( field ), _typeMapping ) : null;
+    }
+
+    private static Method makeAccessible( final Method method ) {
+        if ( method != null ) {
+            try {
+                method.setAccessible( true );
+            } catch ( final SecurityException e ) {
+                // fall back to checked access
+            }
+        }
+        return method;
+    }
+
+    private static Field makeAccessible( final Field field ) {
+        try {
+            field.setAccessible( true );
+        } catch ( final SecurityException e ) {
+            // fall back to checked access
+        }
+        return field;
+    }
+
+    String getName() {
+        return _name;
+    }
+
+    byte[] getColumnName() {
+        return _columnName;
+    }
+
+    Class<?> getType() {
+        return _type;
+    }
+
+    /**
+     * @return whether partial updates delete the column instead of writing an empty value when the property is null
+     */
+    boolean isDeleteIfNull() {
+        return _deleteIfNull;
+    }
+
+    Object getValue( final Object bean ) {
+        try {
+            return _readMethod.invoke( bean );
+        } catch ( final IllegalAccessException e ) {
+            throw new HelenaRuntimeException( e );
+        } catch ( final InvocationTargetException e ) {
+            throw new HelenaRuntimeException( e );
+        }
+    }
+
+    void setValue( final Object bean, final Object value ) {
+        try {
+            _writeMethod.invoke( bean, value );
+        } catch ( final IllegalAccessException e ) {
+            throw new HelenaRuntimeException( e );
+        } catch ( final InvocationTargetException e ) {
+            throw new HelenaRuntimeException( e );
+        }
+    }
+
+    byte[] toBytes( final Object value ) {
+        if ( value != null && _typeMapping != null ) {
+            return _typeMapping.toBytes( value );
+        }
+        return _typeConverter.convertValueObjectToByteArray( value );
+    }
+
+    Object fromBytes( final byte[] value ) {
+        if ( _typeMapping != null ) {
+            return _typeMapping.fromBytes( value );
+        }
+        return _typeConverter.convertByteArrayToValueObject( _valueType, value );
+    }
+
+    byte[] readBytes( final Object bean ) {
+        if ( _primitiveAccessor != null ) {
+            return _primitiveAccessor.read( bean );
+        }
+        return toBytes( getValue( bean ) );
+    }
+
+    /**
+     * Primitive properties keep their value if the stored value is empty.
+     */
+    void writeBytes( final Object bean, final byte[] value ) {
+        if ( _primitiveAccessor != null ) {
+            _primitiveAccessor.write( bean, value );
+            return;
+        }
+        final Object object = fromBytes( value );
+        if ( object != null || !_type.isPrimitive() ) {
+            setValue( bean, object );
+        }
+    }
+
+    String readKey( final Object bean ) {
+        return _typeConverter.keyToString( getValue( bean ) );
+    }
+
+    /**
+     * @return the stored form of a value given as a string the way {@link #readKey(Object)} renders it
+     */
+    byte[] stringToBytes( final String value ) {
+        return toBytes( _typeConverter.keyFromString( _valueType, value ) );
+    }
+
+    void writeKey( final Object bean, final String key ) {
+        setValue( bean, _typeConverter.keyFromString( _valueType, key ) );
+    }
+
+}
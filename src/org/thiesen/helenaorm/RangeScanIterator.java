@@ -0,0 +1,148 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.cassandra.thrift.Column;
+
+import com.google.common.base.Function;
+
+/**
+ * Iterates over a key range one page at a time. While the rows of one page are consumed the next
+ * page is already being read in the background, so at most two pages are held in memory.
+ *
+ * Every page after the first starts at the last key of the previous page, which Cassandra returns
+ * again and is skipped. Rows without columns are deleted rows and are skipped as well.
+ */
+class RangeScanIterator<T> implements Iterator<T> {
+
+    interface PageSource {
+        /**
+         * @return up to count rows in key order, starting with startKey inclusive
+         */
+        Map<String, List<Column>> fetch( String startKey, int count );
+    }
+
+    private static final ExecutorService PREFETCHER = Executors.newCachedThreadPool( new DaemonThreadFactory( "helena-scan" ) );
+
+    private final PageSource _source;
+    private final Function<Map.Entry<String, List<Column>>, T> _converter;
+    private final int _pageSize;
+
+    private Iterator<Map.Entry<String, List<Column>>> _page;
+    private Future<Map<String, List<Column>>> _nextPage;
+    private String _skipKey;
+    private String _lastKey;
+    private T _next;
+
+    RangeScanIterator( final PageSource source, final String startKey, final int pageSize,
+            final Function<Map.Entry<String, List<Column>>, T> converter ) {
+        if ( pageSize < 1 ) {
+            throw new IllegalArgumentException( "Page size must be positive, was " + pageSize );
+        }
+        _source = source;
+        _converter = converter;
+        _pageSize = pageSize;
+        _nextPage = prefetch( startKey, pageSize );
+    }
+
+    private Future<Map<String, List<Column>>> prefetch( final String startKey, final int count ) {
+        return PREFETCHER.submit( new Callable<Map<String, List<Column>>>() {
+            @Override
+            public Map<String, List<Column>> call() {
+                return _source.fetch( startKey, count );
+            }
+        } );
+    }
+
+    @Override
+    public boolean hasNext() {
+        while ( _next == null ) {
+            if ( _page != null && _page.hasNext() ) {
+                final Map.Entry<String, List<Column>> row = _page.next();
+                if ( !row.getValue().isEmpty() && !row.getKey().equals( _skipKey ) ) {
+                    _next = _converter.apply( row );
+                }
+            } else if ( _nextPage != null ) {
+                nextPage();
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void nextPage() {
+        final Map<String, List<Column>> page = await( _nextPage );
+        final int requested = _lastKey == null ? _pageSize : _pageSize + 1;
+
+        _skipKey = _lastKey;
+        for ( final String key : page.keySet() ) {
+            _lastKey = key;
+        }
+        _nextPage = page.size() >= requested ? prefetch( _lastKey, _pageSize + 1 ) : null;
+        _page = page.entrySet().iterator();
+    }
+
+    @Override
+    public T next() {
+        if ( !hasNext() ) {
+            throw new NoSuchElementException();
+        }
+        final T next = _next;
+        _next = null;
+        return next;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    private static <V> V await( final Future<V> future ) {
+        try {
+            return future.get();
+        } catch ( final InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new HelenaRuntimeException( "Interrupted while waiting for the next page", e );
+        } catch ( final ExecutionException e ) {
+            if ( e.getCause() instanceof HelenaRuntimeException ) {
+                throw (HelenaRuntimeException) e.getCause();
+            }
+            throw new HelenaRuntimeException( e.getCause() );
+        }
+    }
+
+}
@@ -0,0 +1,171 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.cassandra.thrift.Column;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Caches the column slices of rows by key, least recently used rows are evicted first. Slices are
+ * cached instead of objects, so every read still returns a new instance.
+ *
+ * Every invalidation starts a new epoch. A slice read from Cassandra is only cached if no
+ * invalidation happened while it was read, so a read racing a write can not cache the old row.
+ */
+class RowCache {
+
+    private static final int ENTRY_OVERHEAD = 64;
+    private static final int COLUMN_OVERHEAD = 32;
+
+    private final int _maxEntries;
+    private final long _maxBytes;
+    private final long _ttlMillis;
+
+    private final LinkedHashMap<String, Entry> _entries = new LinkedHashMap<String, Entry>( 16, 0.75f, true );
+    private long _weight;
+    private long _epoch;
+
+    private final AtomicLong _hits = new AtomicLong();
+    private final AtomicLong _misses = new AtomicLong();
+    private final AtomicLong _evictions = new AtomicLong();
+    private final AtomicLong _expirations = new AtomicLong();
+
+    RowCache( final RowCacheConfig config ) {
+        _maxEntries = config.getMaxEntries();
+        _maxBytes = config.getMaxBytes();
+        _ttlMillis = config.getTtlMillis();
+    }
+
+    /**
+     * @return the cached slice, possibly empty if the row did not exist, or null if the row is not cached
+     */
+    List<Column> get( final String key ) {
+        final List<Column> columns;
+        synchronized ( this ) {
+            final Entry entry = _entries.get( key );
+            if ( entry != null && entry.isExpired( System.currentTimeMillis() ) ) {
+                remove( key );
+                _expirations.incrementAndGet();
+                columns = null;
+            } else {
+                columns = entry == null ? null : entry._columns;
+            }
+        }
+        ( columns == null ? _misses : _hits ).incrementAndGet();
+        return columns;
+    }
+
+    /**
+     * @return the epoch to pass to {@link #put(String, List, long)} once the row has been read
+     */
+    synchronized long startRead() {
+        return _epoch;
+    }
+
+    synchronized void put( final String key, final List<Column> columns, final long epoch ) {
+        if ( epoch != _epoch ) {
+            return;
+        }
+        final Entry entry = new Entry( ImmutableList.copyOf( columns ), weigh( key, columns ),
+                _ttlMillis > 0 ? System.currentTimeMillis() + _ttlMillis : Long.MAX_VALUE );
+        remove( key );
+        _entries.put( key, entry );
+        _weight += entry._weight;
+        evict();
+    }
+
+    synchronized void invalidate( final String key ) {
+        _epoch++;
+        remove( key );
+    }
+
+    synchronized void invalidate( final Iterable<String> keys ) {
+        _epoch++;
+        for ( final String key : keys ) {
+            remove( key );
+        }
+    }
+
+    synchronized void invalidateAll() {
+        _epoch++;
+        _entries.clear();
+        _weight = 0;
+    }
+
+    synchronized CacheStats getStats() {
+        return new CacheStats( _hits.get(), _misses.get(), _evictions.get(), _expirations.get(), _entries.size(), _weight );
+    }
+
+    private void remove( final String key ) {
+        final Entry removed = _entries.remove( key );
+        if ( removed != null ) {
+            _weight -= removed._weight;
+        }
+    }
+
+    private void evict() {
+        final Iterator<Map.Entry<String, Entry>> eldest = _entries.entrySet().iterator();
+        while ( eldest.hasNext() && ( ( _maxEntries > 0 && _entries.size() > _maxEntries ) || ( _maxBytes > 0 && _weight > _maxBytes ) ) ) {
+            _weight -= eldest.next().getValue()._weight;
+            eldest.remove();
+            _evictions.incrementAndGet();
+        }
+    }
+
+    private static long weigh( final String key, final List<Column> columns ) {
+        long weight = ENTRY_OVERHEAD + 2L * key.length();
+        for ( final Column column : columns ) {
+            weight += COLUMN_OVERHEAD + column.getName().length + column.getValue().length;
+        }
+        return weight;
+    }
+
+    private static final class Entry {
+
+        private final List<Column> _columns;
+        private final long _weight;
+        private final long _expiresAt;
+
+        Entry( final List<Column> columns, final long weight, final long expiresAt ) {
+            _columns = columns;
+            _weight = weight;
+            _expiresAt = expiresAt;
+        }
+
+        boolean isExpired( final long now ) {
+            return now >= _expiresAt;
+        }
+
+    }
+
+}
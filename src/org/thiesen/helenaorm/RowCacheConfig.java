@@ -0,0 +1,94 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Settings for the row cache of a {@link HelenaDAO}. The cache is disabled unless at least one of
+ * the size limits is set.
+ */
+public class RowCacheConfig {
+
+    private int _maxEntries;
+    private long _maxBytes;
+    private long _ttlMillis;
+
+    public int getMaxEntries() {
+        return _maxEntries;
+    }
+
+    /**
+     * @param maxEntries the maximum number of cached rows, 0 for no limit
+     */
+    public RowCacheConfig setMaxEntries( final int maxEntries ) {
+        if ( maxEntries < 0 ) {
+            throw new IllegalArgumentException( "Maximum number of entries must not be negative, was " + maxEntries );
+        }
+        _maxEntries = maxEntries;
+        return this;
+    }
+
+    public long getMaxBytes() {
+        return _maxBytes;
+    }
+
+    /**
+     * @param maxBytes the maximum estimated size of all cached rows, 0 for no limit
+     */
+    public RowCacheConfig setMaxBytes( final long maxBytes ) {
+        if ( maxBytes < 0 ) {
+            throw new IllegalArgumentException( "Maximum size must not be negative, was " + maxBytes );
+        }
+        _maxBytes = maxBytes;
+        return this;
+    }
+
+    public long getTtlMillis() {
+        return _ttlMillis;
+    }
+
+    /**
+     * @param ttl how long a row may be served from the cache after it was read, 0 to keep it until it is evicted
+     */
+    public RowCacheConfig setTtl( final long ttl, final TimeUnit unit ) {
+        if ( ttl < 0 ) {
+            throw new IllegalArgumentException( "Time to live must not be negative, was " + ttl );
+        }
+        _ttlMillis = unit.toMillis( ttl );
+        return this;
+    }
+
+    public boolean isEnabled() {
+        return _maxEntries > 0 || _maxBytes > 0;
+    }
+
+    @Override
+    public String toString() {
+        return "RowCacheConfig [maxEntries=" + _maxEntries + ", maxBytes=" + _maxBytes + ", ttlMillis=" + _ttlMillis + "]";
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm;
+
+import java.math.BigInteger;
+import java.util.List;
+
+import org.apache.cassandra.dht.RandomPartitioner;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Splits the token space of the {@link RandomPartitioner} into contiguous segments. Each segment
+ * covers the tokens after its start token up to and including its end token.
+ */
+final class TokenRanges {
+
+    private static final BigInteger MAXIMUM_TOKEN = BigInteger.valueOf( 2 ).pow( 127 );
+
+    private static final RandomPartitioner PARTITIONER = new RandomPartitioner();
+
+    private TokenRanges() {
+        // utility class
+    }
+
+    static final class Segment {
+
+        private final String _startToken;
+        private final String _endToken;
+
+        Segment( final String startToken, final String endToken ) {
+            _startToken = startToken;
+            _endToken = endToken;
+        }
+
+        String getStartToken() {
+            return _startToken;
+        }
+
+        String getEndToken() {
+            return _endToken;
+        }
+
+        @Override
+        public String toString() {
+            return "(" + _startToken + ", " + _endToken + "]";
+        }
+
+    }
+
+    static List<Segment> split( final int segments ) {
+        if ( segments < 1 ) {
+            throw new IllegalArgumentException( "Number of segments must be positive, was " + segments );
+        }
+        final ImmutableList.Builder<Segment> builder = ImmutableList.builder();
+        BigInteger start = BigInteger.ZERO;
+        for ( int i = 1; i <= segments; i++ ) {
+            final BigInteger end = MAXIMUM_TOKEN.multiply( BigInteger.valueOf( i ) ).divide( BigInteger.valueOf( segments ) );
+            builder.add( new Segment( start.toString(), end.toString() ) );
+            start = end;
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return the token of the key in the form Thrift expects in a KeyRange
+     */
+    static String tokenOf( final String key ) {
+        return PARTITIONER.getTokenFactory().toString( PARTITIONER.getToken( key ) );
+    }
+
+    static BigInteger tokenValueOf( final String key ) {
+        return new BigInteger( tokenOf( key ) );
+    }
+
+}
@@ -25,14 +25,14 @@
  */
 package org.thiesen.helenaorm;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.thiesen.helenaorm.codecs.CompactObjectCodec;
+import org.thiesen.helenaorm.codecs.JavaSerializationCodec;
+import org.thiesen.helenaorm.mappings.AbstractBinaryTypeMapping;
 
 import com.google.common.base.Function;
 import com.google.common.collect.ImmutableMap;
@@ -40,14 +40,26 @@ import com.google.common.collect.ImmutableMap;
 class TypeConverter {
 
     private static final byte[] EMPTY_BYTES = new byte[0];
+    private static final ObjectCodec LEGACY_CODEC = new JavaSerializationCodec();
     
     private final ImmutableMap<Class<?>, TypeMapping<?>> _typeMappings;
     private final SerializeUnknownClasses _serializationPolicy;
+    private final ObjectCodec _objectCodec;
+    private final EnumEncoding _enumEncoding;
+    private final ConcurrentMap<Class<?>, EnumTypeMapping<?>> _enumMappings = new ConcurrentHashMap<Class<?>, EnumTypeMapping<?>>();
 
     public TypeConverter( final ImmutableMap<Class<?>, TypeMapping<?>> typeMappings,
             final SerializeUnknownClasses serializationPolicy ) {
+        this( typeMappings, serializationPolicy, new CompactObjectCodec(), EnumEncoding.NAME );
+    }
+
+    public TypeConverter( final ImmutableMap<Class<?>, TypeMapping<?>> typeMappings,
+            final SerializeUnknownClasses serializationPolicy, final ObjectCodec objectCodec,
+            final EnumEncoding enumEncoding ) {
         _serializationPolicy = serializationPolicy;
         _typeMappings = typeMappings;
+        _objectCodec = objectCodec;
+        _enumEncoding = enumEncoding;
     }
 
 
@@ -59,8 +71,8 @@ class TypeConverter {
         if ( _typeMappings.containsKey( propertyValue.getClass() ) ) {
             return _typeMappings.get( propertyValue.getClass() ).toBytes( propertyValue );
         }
-        if ( Enum.class.isAssignableFrom( propertyValue.getClass() ) ) {
-            return stringToBytes( ((Enum<?>)propertyValue).name() );
+        if ( propertyValue instanceof Enum<?> ) {
+            return getEnumMapping( ((Enum<?>)propertyValue).getDeclaringClass() ).toBytes( propertyValue );
         }
         if ( propertyValue instanceof Serializable && _serializationPolicy == SerializeUnknownClasses.YES ) {
             return serialize( propertyValue );
@@ -75,17 +87,49 @@ class TypeConverter {
 
     private byte[] serialize( final Object propertyValue ) {
         try {
-            final ByteArrayOutputStream out = new ByteArrayOutputStream();
-            final ObjectOutputStream oout = new ObjectOutputStream( out );
+            return _objectCodec.encode( propertyValue );
+        } catch ( final IllegalArgumentException e ) {
+            throw new HelenaRuntimeException( "Unable to Serialize object of type " + propertyValue.getClass() , e );
+        }
 
-            oout.writeObject( propertyValue );
-            oout.close();
+    }
 
-            return out.toByteArray();
-        } catch ( final IOException e ) {
-            throw new HelenaRuntimeException( "Unable to Serialize object of type " + propertyValue.getClass() , e );
+    /**
+     * @return the mapping that will always be used for values of the given declared type, or null if
+     * the mapping has to be chosen by the runtime class of each value
+     */
+    TypeMapping<?> getExactTypeMapping( final Class<?> type ) {
+        if ( type.isEnum() && !_typeMappings.containsKey( type ) ) {
+            return getEnumMapping( type );
+        }
+        if ( Modifier.isFinal( type.getModifiers() ) ) {
+            return _typeMappings.get( type );
         }
+        return null;
+    }
 
+    /**
+     * Row keys are Strings, so binary mappings contribute their textual form instead of their bytes.
+     */
+    String keyToString( final Object key ) {
+        if ( key instanceof Enum<?> && !_typeMappings.containsKey( key.getClass() ) ) {
+            return ((Enum<?>)key).name();
+        }
+        if ( key != null ) {
+            final TypeMapping<?> mapping = _typeMappings.get( key.getClass() );
+            if ( mapping instanceof AbstractBinaryTypeMapping<?> ) {
+                return ( (AbstractBinaryTypeMapping<?>) mapping ).toKeyString( key );
+            }
+        }
+        return bytesToString( convertValueObjectToByteArray( key ) );
+    }
+
+    Object keyFromString( final Class<?> keyType, final String key ) {
+        final TypeMapping<?> mapping = _typeMappings.get( keyType );
+        if ( mapping instanceof AbstractBinaryTypeMapping<?> ) {
+            return ( (AbstractBinaryTypeMapping<?>) mapping ).fromString( key );
+        }
+        return convertByteArrayToValueObject( keyType, stringToBytes( key ) );
     }
 
     String bytesToString( final byte[] bytes ) {
@@ -101,53 +145,50 @@ class TypeConverter {
             return returnType.cast(_typeMappings.get( returnType ).fromBytes( value ) );
         }
         if ( returnType.isEnum() ) {
-            return makeEnumInstance( returnType, value );
+            return getEnumMapping( returnType ).fromBytes( value );
         }
         if ( Serializable.class.isAssignableFrom( returnType ) ) {
-            return returnType.cast( deserialize( value ) );
+            return returnType.cast( deserialize( returnType, value ) );
         }
 
         throw new HelenaRuntimeException("Can not handle type " + returnType.getClass() + ", maybe you have getters and setters with different Types? Otherwise, add a Type mapping");
     }
     
-    private Enum<?> makeEnumInstance( final Class<?> returnType, final byte[] value ) {
-        try {
-            final Method method = returnType.getMethod( "valueOf", String.class );
-            
-            return (Enum<?>) method.invoke( returnType, bytesToString( value ) );
-            
-        } catch ( final SecurityException e ) {
-            throw new HelenaRuntimeException( e );
-        } catch ( final NoSuchMethodException e ) {
-            throw new HelenaRuntimeException( e );
-        } catch ( final IllegalArgumentException e ) {
-            throw new HelenaRuntimeException( e );
-        } catch ( final IllegalAccessException e ) {
-            throw new HelenaRuntimeException( e );
-        } catch ( final InvocationTargetException e ) {
-            throw new HelenaRuntimeException( e );
+    /**
+     * The decode table of an enum class, built on first use. DAOs resolve the tables of their enum
+     * properties when they are created.
+     */
+    @SuppressWarnings( { "unchecked", "rawtypes" } )
+    private EnumTypeMapping<?> getEnumMapping( final Class<?> enumType ) {
+        EnumTypeMapping<?> mapping = _enumMappings.get( enumType );
+        if ( mapping == null ) {
+            mapping = new EnumTypeMapping( enumType, _enumEncoding, this );
+            final EnumTypeMapping<?> existing = _enumMappings.putIfAbsent( enumType, mapping );
+            if ( existing != null ) {
+                mapping = existing;
+            }
         }
-        
-        
+        return mapping;
     }
 
-    private Object deserialize( final byte[] value ) {
-        final ByteArrayInputStream in = new ByteArrayInputStream( value );
+    private Object deserialize( final Class<?> returnType, final byte[] value ) {
         try {
-            final ObjectInputStream oin = new ObjectInputStream( in );
-
-            final Object retval = oin.readObject();
-
-            oin.close();
-
-            return retval;
-        } catch ( final IOException e ) {
-            throw new HelenaRuntimeException( e );
-        } catch ( final ClassNotFoundException e ) {
+            if ( isJavaSerialized( value ) ) {
+                return LEGACY_CODEC.decode( returnType, value );
+            }
+            return _objectCodec.decode( returnType, value );
+        } catch ( final IllegalArgumentException e ) {
             throw new HelenaRuntimeException( e );
         }
     }
 
+    /**
+     * Values written before codecs were pluggable start with the Java serialization stream magic.
+     */
+    private static boolean isJavaSerialized( final byte[] value ) {
+        return value.length >= 2 && value[0] == (byte) 0xAC && value[1] == (byte) 0xED;
+    }
+
 
 
     public Function<String,byte[]> toByteArrayFunction() {
@@ -41,5 +41,36 @@ public @interface HelenaBean {
 	String columnFamily();
 
 	ConsistencyLevel consistency() default ConsistencyLevel.QUORUM;
+
+	/**
+	 * The maximum number of rows kept in the row cache of the DAO, 0 leaves it disabled unless
+	 * {@link #cacheMaxBytes()} is set.
+	 */
+	int cacheSize() default 0;
+
+	/**
+	 * The maximum estimated size in bytes of the rows kept in the row cache, 0 for no limit.
+	 */
+	long cacheMaxBytes() default 0;
+
+	/**
+	 * How long a cached row may be served, 0 to keep it until it is evicted or overwritten.
+	 */
+	int cacheTtlSeconds() default 0;
+
+	/**
+	 * Whether objects read through the DAO remember their column values, so that
+	 * {@link org.thiesen.helenaorm.HelenaDAO#update(Object)} can write only the changed columns.
+	 */
+	boolean trackChanges() default false;
+
+	/**
+	 * Whether <code>long</code>, <code>int</code>, <code>double</code>, <code>float</code> and
+	 * <code>boolean</code> properties are read and written through the field of the same name, or
+	 * the name prefixed with an underscore, instead of the getter and setter, which avoids boxing every value. Only enable it if the
+	 * accessors of those properties do nothing but get and set the field. Types whose mapping has
+	 * no primitive codec, see {@link org.thiesen.helenaorm.LongCodec}, use the accessors anyway.
+	 */
+	boolean fieldAccess() default false;
 	
 }
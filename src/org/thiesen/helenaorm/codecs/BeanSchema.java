@@ -0,0 +1,156 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm.codecs;
+
+import java.io.Externalizable;
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+/**
+ * The cached layout of a class the {@link CompactObjectCodec} writes field by field: its no-argument
+ * constructor and the fields Java serialization would have written, sorted by name.
+ */
+final class BeanSchema {
+
+    private static final List<String> SERIALIZATION_HOOKS = Arrays.asList(
+        "writeObject", "readObject", "readObjectNoData", "writeReplace", "readResolve" );
+
+    private static final Comparator<Field> BY_NAME = new Comparator<Field>() {
+        @Override
+        public int compare( final Field o1, final Field o2 ) {
+            return o1.getName().compareTo( o2.getName() );
+        }
+    };
+
+    private final Constructor<?> _constructor;
+    private final Field[] _fields;
+    private final ImmutableMap<String, Field> _fieldsByName;
+
+    private BeanSchema( final Constructor<?> constructor, final Field[] fields ) {
+        _constructor = constructor;
+        _fields = fields;
+        final ImmutableMap.Builder<String, Field> builder = ImmutableMap.builder();
+        for ( final Field field : fields ) {
+            builder.put( field.getName(), field );
+        }
+        _fieldsByName = builder.build();
+    }
+
+    /**
+     * @return the schema of the class, or null if its instances have to be written with Java serialization
+     * because they customize it, lack a no-argument constructor or are otherwise not plain data holders
+     */
+    static BeanSchema create( final Class<?> clz ) {
+        if ( !Serializable.class.isAssignableFrom( clz ) || Externalizable.class.isAssignableFrom( clz )
+                || clz.isArray() || clz.isInterface() || Modifier.isAbstract( clz.getModifiers() )
+                || clz.isAnonymousClass() || clz.isLocalClass() || clz.getName().startsWith( "java." )
+                || clz.getName().startsWith( "javax." ) ) {
+            return null;
+        }
+
+        final Constructor<?> constructor;
+        try {
+            constructor = clz.getDeclaredConstructor();
+            constructor.setAccessible( true );
+        } catch ( final NoSuchMethodException e ) {
+            return null;
+        } catch ( final SecurityException e ) {
+            return null;
+        }
+
+        final Map<String, Field> fields = Maps.newHashMap();
+        for ( Class<?> current = clz; current != null && Serializable.class.isAssignableFrom( current ); current = current.getSuperclass() ) {
+            if ( hasSerializationHooks( current ) ) {
+                return null;
+            }
+            for ( final Field field : current.getDeclaredFields() ) {
+                final int modifiers = field.getModifiers();
+                if ( Modifier.isStatic( modifiers ) || Modifier.isTransient( modifiers ) ) {
+                    continue;
+                }
+                if ( field.isSynthetic() || fields.containsKey( field.getName() ) ) {
+                    return null;
+                }
+                try {
+                    field.setAccessible( true );
+                } catch ( final SecurityException e ) {
+                    return null;
+                }
+                fields.put( field.getName(), field );
+            }
+        }
+
+        final Field[] sorted = fields.values().toArray( new Field[fields.size()] );
+        Arrays.sort( sorted, BY_NAME );
+        return new BeanSchema( constructor, sorted );
+    }
+
+    private static boolean hasSerializationHooks( final Class<?> clz ) {
+        for ( final Method method : clz.getDeclaredMethods() ) {
+            if ( SERIALIZATION_HOOKS.contains( method.getName() ) ) {
+                return true;
+            }
+        }
+        for ( final Field field : clz.getDeclaredFields() ) {
+            if ( "serialPersistentFields".equals( field.getName() ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    Field[] getFields() {
+        return _fields;
+    }
+
+    Field getField( final String name ) {
+        return _fieldsByName.get( name );
+    }
+
+    Object newInstance() {
+        try {
+            return _constructor.newInstance();
+        } catch ( final InstantiationException e ) {
+            throw new IllegalArgumentException( "Could not instantiate " + _constructor.getDeclaringClass().getName(), e );
+        } catch ( final IllegalAccessException e ) {
+            throw new IllegalArgumentException( "Could not instantiate " + _constructor.getDeclaringClass().getName(), e );
+        } catch ( final InvocationTargetException e ) {
+            throw new IllegalArgumentException( "Could not instantiate " + _constructor.getDeclaringClass().getName(), e );
+        }
+    }
+
+}
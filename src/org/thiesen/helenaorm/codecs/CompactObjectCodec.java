@@ -0,0 +1,586 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm.codecs;
+
+import java.lang.reflect.Field;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.thiesen.helenaorm.ObjectCodec;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * A compact, tagged binary format for values without a type mapping.
+ *
+ * Every value starts with a one byte tag. Numbers are written as zig-zag varints, strings as
+ * length prefixed UTF-8. Plain serializable classes are written field by field using a cached
+ * {@link BeanSchema}, with the class and field names written once per value and referenced by
+ * index afterwards. Standard collections and maps are written element by element. Anything else,
+ * including classes that customize their serialization and cyclic object graphs, is embedded
+ * using Java serialization.
+ *
+ * Output buffers are kept per thread and reused, so encoding allocates only the result.
+ */
+public class CompactObjectCodec implements ObjectCodec {
+
+    private static final Charset UTF8 = Charset.forName( "UTF-8" );
+
+    static final byte FORMAT_VERSION = 0x01;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte FLOAT = 5;
+    private static final byte TRUE = 6;
+    private static final byte FALSE = 7;
+    private static final byte BYTE = 8;
+    private static final byte SHORT = 9;
+    private static final byte CHARACTER = 10;
+    private static final byte BYTES = 11;
+    private static final byte UUID_VALUE = 12;
+    private static final byte DATE = 13;
+    private static final byte ENUM = 14;
+    private static final byte ARRAY_LIST = 15;
+    private static final byte LINKED_LIST = 16;
+    private static final byte HASH_SET = 17;
+    private static final byte LINKED_HASH_SET = 18;
+    private static final byte HASH_MAP = 19;
+    private static final byte LINKED_HASH_MAP = 20;
+    private static final byte BEAN = 21;
+    private static final byte DECLARED_BEAN = 22;
+    private static final byte JAVA_SERIALIZED = 23;
+
+    private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+    private static final Object NO_SCHEMA = new Object();
+
+    private final ConcurrentMap<Class<?>, Object> _schemas = new ConcurrentHashMap<Class<?>, Object>();
+    private final ConcurrentMap<String, Class<?>> _classes = new ConcurrentHashMap<String, Class<?>>();
+
+    private final ThreadLocal<Output> _buffers = new ThreadLocal<Output>() {
+        @Override
+        protected Output initialValue() {
+            return new Output();
+        }
+    };
+
+    @Override
+    public byte[] encode( final Object value ) {
+        Output out = _buffers.get();
+        if ( out._inUse ) {
+            out = new Output();
+        }
+        out._inUse = true;
+        try {
+            out.writeByte( FORMAT_VERSION );
+            try {
+                writeValue( out, value, null, new EncodeContext() );
+            } catch ( final CycleException e ) {
+                out.reset();
+                out.writeByte( FORMAT_VERSION );
+                writeJavaSerialized( out, value );
+            }
+            return out.toByteArray();
+        } finally {
+            out._inUse = false;
+            if ( out._bytes.length > MAX_RETAINED_BUFFER_SIZE ) {
+                _buffers.remove();
+            } else {
+                out.reset();
+            }
+        }
+    }
+
+    @Override
+    public Object decode( final Class<?> type, final byte[] value ) {
+        final Input in = new Input( value );
+        final byte version = in.readByte();
+        if ( version != FORMAT_VERSION ) {
+            throw new IllegalArgumentException( "Unknown compact codec format version " + version );
+        }
+        return readValue( in, type, new DecodeContext() );
+    }
+
+    private void writeValue( final Output out, final Object value, final Class<?> declaredType, final EncodeContext context ) {
+        if ( value == null ) {
+            out.writeByte( NULL );
+            return;
+        }
+        final Class<?> clz = value.getClass();
+        if ( clz == String.class ) {
+            out.writeByte( STRING );
+            out.writeString( (String) value );
+        } else if ( clz == Integer.class ) {
+            out.writeByte( INTEGER );
+            out.writeSignedVarLong( ( (Integer) value ).intValue() );
+        } else if ( clz == Long.class ) {
+            out.writeByte( LONG );
+            out.writeSignedVarLong( ( (Long) value ).longValue() );
+        } else if ( clz == Double.class ) {
+            out.writeByte( DOUBLE );
+            out.writeFixedLong( Double.doubleToLongBits( ( (Double) value ).doubleValue() ) );
+        } else if ( clz == Float.class ) {
+            out.writeByte( FLOAT );
+            out.writeFixedInt( Float.floatToIntBits( ( (Float) value ).floatValue() ) );
+        } else if ( clz == Boolean.class ) {
+            out.writeByte( ( (Boolean) value ).booleanValue() ? TRUE : FALSE );
+        } else if ( clz == Byte.class ) {
+            out.writeByte( BYTE );
+            out.writeByte( ( (Byte) value ).byteValue() );
+        } else if ( clz == Short.class ) {
+            out.writeByte( SHORT );
+            out.writeSignedVarLong( ( (Short) value ).shortValue() );
+        } else if ( clz == Character.class ) {
+            out.writeByte( CHARACTER );
+            out.writeVarLong( ( (Character) value ).charValue() );
+        } else if ( clz == byte[].class ) {
+            final byte[] bytes = (byte[]) value;
+            out.writeByte( BYTES );
+            out.writeVarLong( bytes.length );
+            out.writeBytes( bytes, 0, bytes.length );
+        } else if ( clz == UUID.class ) {
+            out.writeByte( UUID_VALUE );
+            out.writeFixedLong( ( (UUID) value ).getMostSignificantBits() );
+            out.writeFixedLong( ( (UUID) value ).getLeastSignificantBits() );
+        } else if ( clz == Date.class ) {
+            out.writeByte( DATE );
+            out.writeSignedVarLong( ( (Date) value ).getTime() );
+        } else if ( value instanceof Enum<?> ) {
+            out.writeByte( ENUM );
+            writeSymbol( out, ( (Enum<?>) value ).getDeclaringClass().getName(), context );
+            writeSymbol( out, ( (Enum<?>) value ).name(), context );
+        } else if ( clz == ArrayList.class || clz == LinkedList.class || clz == HashSet.class || clz == LinkedHashSet.class ) {
+            context.enter( value );
+            out.writeByte( collectionTag( clz ) );
+            final Collection<?> collection = (Collection<?>) value;
+            out.writeVarLong( collection.size() );
+            for ( final Object element : collection ) {
+                writeValue( out, element, null, context );
+            }
+            context.leave( value );
+        } else if ( clz == HashMap.class || clz == LinkedHashMap.class ) {
+            context.enter( value );
+            out.writeByte( clz == HashMap.class ? HASH_MAP : LINKED_HASH_MAP );
+            final Map<?, ?> map = (Map<?, ?>) value;
+            out.writeVarLong( map.size() );
+            for ( final Map.Entry<?, ?> entry : map.entrySet() ) {
+                writeValue( out, entry.getKey(), null, context );
+                writeValue( out, entry.getValue(), null, context );
+            }
+            context.leave( value );
+        } else {
+            final BeanSchema schema = schemaFor( clz );
+            if ( schema != null ) {
+                writeBean( out, value, clz, schema, declaredType, context );
+            } else {
+                writeJavaSerialized( out, value );
+            }
+        }
+    }
+
+    private static byte collectionTag( final Class<?> clz ) {
+        if ( clz == ArrayList.class ) {
+            return ARRAY_LIST;
+        }
+        if ( clz == LinkedList.class ) {
+            return LINKED_LIST;
+        }
+        return clz == HashSet.class ? HASH_SET : LINKED_HASH_SET;
+    }
+
+    private void writeBean( final Output out, final Object value, final Class<?> clz, final BeanSchema schema,
+            final Class<?> declaredType, final EncodeContext context ) {
+        context.enter( value );
+        if ( clz == declaredType ) {
+            out.writeByte( DECLARED_BEAN );
+        } else {
+            out.writeByte( BEAN );
+            writeSymbol( out, clz.getName(), context );
+        }
+        final Field[] fields = schema.getFields();
+        out.writeVarLong( fields.length );
+        try {
+            for ( final Field field : fields ) {
+                writeSymbol( out, field.getName(), context );
+                writeValue( out, field.get( value ), field.getType(), context );
+            }
+        } catch ( final IllegalAccessException e ) {
+            throw new IllegalArgumentException( e );
+        }
+        context.leave( value );
+    }
+
+    private static void writeJavaSerialized( final Output out, final Object value ) {
+        final byte[] serialized = new JavaSerializationCodec().encode( value );
+        out.writeByte( JAVA_SERIALIZED );
+        out.writeVarLong( serialized.length );
+        out.writeBytes( serialized, 0, serialized.length );
+    }
+
+    private static void writeSymbol( final Output out, final String symbol, final EncodeContext context ) {
+        final Integer index = context.symbols().get( symbol );
+        if ( index != null ) {
+            out.writeVarLong( index.intValue() + 1 );
+        } else {
+            context.symbols().put( symbol, Integer.valueOf( context.symbols().size() ) );
+            out.writeVarLong( 0 );
+            out.writeString( symbol );
+        }
+    }
+
+    private Object readValue( final Input in, final Class<?> declaredType, final DecodeContext context ) {
+        final byte tag = in.readByte();
+        switch ( tag ) {
+            case NULL:
+                return null;
+            case STRING:
+                return in.readString();
+            case INTEGER:
+                return Integer.valueOf( (int) in.readSignedVarLong() );
+            case LONG:
+                return Long.valueOf( in.readSignedVarLong() );
+            case DOUBLE:
+                return Double.valueOf( Double.longBitsToDouble( in.readFixedLong() ) );
+            case FLOAT:
+                return Float.valueOf( Float.intBitsToFloat( in.readFixedInt() ) );
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case BYTE:
+                return Byte.valueOf( in.readByte() );
+            case SHORT:
+                return Short.valueOf( (short) in.readSignedVarLong() );
+            case CHARACTER:
+                return Character.valueOf( (char) in.readVarLong() );
+            case BYTES:
+                return in.readBytes( (int) in.readVarLong() );
+            case UUID_VALUE:
+                return new UUID( in.readFixedLong(), in.readFixedLong() );
+            case DATE:
+                return new Date( in.readSignedVarLong() );
+            case ENUM:
+                return readEnum( in, context );
+            case ARRAY_LIST:
+                return readCollection( in, new ArrayList<Object>(), context );
+            case LINKED_LIST:
+                return readCollection( in, new LinkedList<Object>(), context );
+            case HASH_SET:
+                return readCollection( in, new HashSet<Object>(), context );
+            case LINKED_HASH_SET:
+                return readCollection( in, new LinkedHashSet<Object>(), context );
+            case HASH_MAP:
+                return readMap( in, new HashMap<Object, Object>(), context );
+            case LINKED_HASH_MAP:
+                return readMap( in, new LinkedHashMap<Object, Object>(), context );
+            case BEAN:
+                return readBean( in, resolveClass( readSymbol( in, context ) ), context );
+            case DECLARED_BEAN:
+                if ( declaredType == null ) {
+                    throw new IllegalArgumentException( "Bean written without class name in an untyped position" );
+                }
+                return readBean( in, declaredType, context );
+            case JAVA_SERIALIZED:
+                final int length = (int) in.readVarLong();
+                final Object result = JavaSerializationCodec.deserialize( in._bytes, in._position, length );
+                in._position += length;
+                return result;
+            default:
+                throw new IllegalArgumentException( "Unknown compact codec tag " + tag );
+        }
+    }
+
+    @SuppressWarnings( { "unchecked", "rawtypes" } )
+    private Object readEnum( final Input in, final DecodeContext context ) {
+        final Class enumClass = resolveClass( readSymbol( in, context ) );
+        return Enum.valueOf( enumClass, readSymbol( in, context ) );
+    }
+
+    private Object readCollection( final Input in, final Collection<Object> collection, final DecodeContext context ) {
+        final long size = in.readVarLong();
+        for ( long i = 0; i < size; i++ ) {
+            collection.add( readValue( in, null, context ) );
+        }
+        return collection;
+    }
+
+    private Object readMap( final Input in, final Map<Object, Object> map, final DecodeContext context ) {
+        final long size = in.readVarLong();
+        for ( long i = 0; i < size; i++ ) {
+            final Object key = readValue( in, null, context );
+            map.put( key, readValue( in, null, context ) );
+        }
+        return map;
+    }
+
+    private Object readBean( final Input in, final Class<?> clz, final DecodeContext context ) {
+        final BeanSchema schema = schemaFor( clz );
+        if ( schema == null ) {
+            throw new IllegalArgumentException( clz.getName() + " can no longer be read field by field" );
+        }
+        final Object bean = schema.newInstance();
+        final long fieldCount = in.readVarLong();
+        try {
+            for ( long i = 0; i < fieldCount; i++ ) {
+                final Field field = schema.getField( readSymbol( in, context ) );
+                final Object value = readValue( in, field == null ? null : field.getType(), context );
+                if ( field != null && ( value != null || !field.getType().isPrimitive() ) ) {
+                    field.set( bean, value );
+                }
+            }
+        } catch ( final IllegalAccessException e ) {
+            throw new IllegalArgumentException( e );
+        }
+        return bean;
+    }
+
+    private static String readSymbol( final Input in, final DecodeContext context ) {
+        final int index = (int) in.readVarLong();
+        if ( index == 0 ) {
+            final String symbol = in.readString();
+            context.symbols().add( symbol );
+            return symbol;
+        }
+        return context.symbols().get( index - 1 );
+    }
+
+    private BeanSchema schemaFor( final Class<?> clz ) {
+        Object schema = _schemas.get( clz );
+        if ( schema == null ) {
+            final BeanSchema created = BeanSchema.create( clz );
+            schema = created == null ? NO_SCHEMA : created;
+            _schemas.putIfAbsent( clz, schema );
+        }
+        return schema == NO_SCHEMA ? null : (BeanSchema) schema;
+    }
+
+    private Class<?> resolveClass( final String name ) {
+        Class<?> clz = _classes.get( name );
+        if ( clz == null ) {
+            try {
+                final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+                clz = Class.forName( name, false, loader != null ? loader : CompactObjectCodec.class.getClassLoader() );
+            } catch ( final ClassNotFoundException e ) {
+                throw new IllegalArgumentException( e );
+            }
+            _classes.putIfAbsent( name, clz );
+        }
+        return clz;
+    }
+
+    private static final class CycleException extends RuntimeException {
+        private static final long serialVersionUID = 3364893271426155407L;
+    }
+
+    private static final class EncodeContext {
+        private final IdentityHashMap<Object, Boolean> _path = new IdentityHashMap<Object, Boolean>();
+        private Map<String, Integer> _symbols;
+
+        void enter( final Object value ) {
+            if ( _path.put( value, Boolean.TRUE ) != null ) {
+                throw new CycleException();
+            }
+        }
+
+        void leave( final Object value ) {
+            _path.remove( value );
+        }
+
+        Map<String, Integer> symbols() {
+            if ( _symbols == null ) {
+                _symbols = Maps.newHashMap();
+            }
+            return _symbols;
+        }
+    }
+
+    private static final class DecodeContext {
+        private List<String> _symbols;
+
+        List<String> symbols() {
+            if ( _symbols == null ) {
+                _symbols = Lists.newArrayList();
+            }
+            return _symbols;
+        }
+    }
+
+    private static final class Output {
+        private byte[] _bytes = new byte[256];
+        private int _size;
+        private boolean _inUse;
+
+        void reset() {
+            _size = 0;
+        }
+
+        private void ensureCapacity( final int additional ) {
+            if ( _size + additional > _bytes.length ) {
+                final byte[] grown = new byte[Math.max( _bytes.length * 2, _size + additional )];
+                System.arraycopy( _bytes, 0, grown, 0, _size );
+                _bytes = grown;
+            }
+        }
+
+        void writeByte( final byte value ) {
+            ensureCapacity( 1 );
+            _bytes[_size++] = value;
+        }
+
+        void writeBytes( final byte[] value, final int offset, final int length ) {
+            ensureCapacity( length );
+            System.arraycopy( value, offset, _bytes, _size, length );
+            _size += length;
+        }
+
+        void writeVarLong( final long value ) {
+            ensureCapacity( 10 );
+            long remaining = value;
+            while ( ( remaining & ~0x7FL ) != 0 ) {
+                _bytes[_size++] = (byte) ( ( remaining & 0x7F ) | 0x80 );
+                remaining >>>= 7;
+            }
+            _bytes[_size++] = (byte) remaining;
+        }
+
+        void writeSignedVarLong( final long value ) {
+            writeVarLong( ( value << 1 ) ^ ( value >> 63 ) );
+        }
+
+        void writeFixedLong( final long value ) {
+            ensureCapacity( 8 );
+            for ( int shift = 56; shift >= 0; shift -= 8 ) {
+                _bytes[_size++] = (byte) ( value >>> shift );
+            }
+        }
+
+        void writeFixedInt( final int value ) {
+            ensureCapacity( 4 );
+            for ( int shift = 24; shift >= 0; shift -= 8 ) {
+                _bytes[_size++] = (byte) ( value >>> shift );
+            }
+        }
+
+        void writeString( final String value ) {
+            final byte[] utf8 = value.getBytes( UTF8 );
+            writeVarLong( utf8.length );
+            writeBytes( utf8, 0, utf8.length );
+        }
+
+        byte[] toByteArray() {
+            final byte[] result = new byte[_size];
+            System.arraycopy( _bytes, 0, result, 0, _size );
+            return result;
+        }
+    }
+
+    private static final class Input {
+        private final byte[] _bytes;
+        private int _position;
+
+        Input( final byte[] bytes ) {
+            _bytes = bytes;
+        }
+
+        byte readByte() {
+            if ( _position >= _bytes.length ) {
+                throw new IllegalArgumentException( "Unexpected end of compact codec value" );
+            }
+            return _bytes[_position++];
+        }
+
+        long readVarLong() {
+            long result = 0;
+            for ( int shift = 0; shift < 64; shift += 7 ) {
+                final byte b = readByte();
+                result |= (long) ( b & 0x7F ) << shift;
+                if ( ( b & 0x80 ) == 0 ) {
+                    return result;
+                }
+            }
+            throw new IllegalArgumentException( "Malformed varint in compact codec value" );
+        }
+
+        long readSignedVarLong() {
+            final long raw = readVarLong();
+            return ( raw >>> 1 ) ^ -( raw & 1 );
+        }
+
+        long readFixedLong() {
+            long result = 0;
+            for ( int i = 0; i < 8; i++ ) {
+                result = ( result << 8 ) | ( readByte() & 0xFF );
+            }
+            return result;
+        }
+
+        int readFixedInt() {
+            int result = 0;
+            for ( int i = 0; i < 4; i++ ) {
+                result = ( result << 8 ) | ( readByte() & 0xFF );
+            }
+            return result;
+        }
+
+        byte[] readBytes( final int length ) {
+            if ( length < 0 || _position + length > _bytes.length ) {
+                throw new IllegalArgumentException( "Unexpected end of compact codec value" );
+            }
+            final byte[] result = new byte[length];
+            System.arraycopy( _bytes, _position, result, 0, length );
+            _position += length;
+            return result;
+        }
+
+        String readString() {
+            final int length = (int) readVarLong();
+            if ( length < 0 || _position + length > _bytes.length ) {
+                throw new IllegalArgumentException( "Unexpected end of compact codec value" );
+            }
+            final String result = new String( _bytes, _position, length, UTF8 );
+            _position += length;
+            return result;
+        }
+    }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm.codecs;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.thiesen.helenaorm.ObjectCodec;
+
+/**
+ * Plain Java serialization, the format used before codecs were pluggable.
+ */
+public class JavaSerializationCodec implements ObjectCodec {
+
+    @Override
+    public byte[] encode( final Object value ) {
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final ObjectOutputStream oout = new ObjectOutputStream( out );
+
+            oout.writeObject( value );
+            oout.close();
+
+            return out.toByteArray();
+        } catch ( final IOException e ) {
+            throw new IllegalArgumentException( "Unable to Serialize object of type " + value.getClass(), e );
+        }
+    }
+
+    @Override
+    public Object decode( final Class<?> type, final byte[] value ) {
+        return deserialize( value, 0, value.length );
+    }
+
+    static Object deserialize( final byte[] value, final int offset, final int length ) {
+        try {
+            final ObjectInputStream oin = new ObjectInputStream( new ByteArrayInputStream( value, offset, length ) );
+            final Object retval = oin.readObject();
+            oin.close();
+            return retval;
+        } catch ( final IOException e ) {
+            throw new IllegalArgumentException( e );
+        } catch ( final ClassNotFoundException e ) {
+            throw new IllegalArgumentException( e );
+        }
+    }
+
+}
@@ -0,0 +1,248 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm.mappings;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+
+import org.thiesen.helenaorm.BufferTypeMapping;
+import org.thiesen.helenaorm.BufferTypeMappings;
+
+/**
+ * Base class for mappings that store values in a fixed width binary form. Values written by
+ * the older string based mappings, or by the Java serialization fallback, are still understood
+ * when reading, so existing data can be migrated gradually.
+ *
+ * Row keys are Strings in Cassandra, so keys use {@link #toKeyString(Object)} and
+ * {@link #fromString(String)} instead of the binary form.
+ *
+ * Subclasses override {@link #encode(Object, ByteBuffer)} and {@link #decode(ByteBuffer, int)} to
+ * work on buffers directly, by default both go through the array based methods.
+ */
+public abstract class AbstractBinaryTypeMapping<T> implements BufferTypeMapping<T> {
+
+    private final static StringTypeMapping STRING_MAPPING = new StringTypeMapping();
+
+    private static final byte JAVA_SERIALIZATION_MAGIC_HIGH = (byte) 0xAC;
+    private static final byte JAVA_SERIALIZATION_MAGIC_LOW = (byte) 0xED;
+
+    private final Class<T> _type;
+    private final int _width;
+
+    protected AbstractBinaryTypeMapping( final Class<T> type, final int width ) {
+        _type = type;
+        _width = width;
+    }
+
+    @Override
+    public T fromBytes( final byte[] value ) {
+        if ( value.length == 0 ) {
+            return null;
+        }
+        if ( value.length == _width && !isStringEncoded( value ) ) {
+            return decode( value );
+        }
+        if ( isJavaSerialized( value ) ) {
+            return _type.cast( deserialize( value ) );
+        }
+        return fromString( STRING_MAPPING.fromBytes( value ) );
+    }
+
+    @Override
+    public byte[] toBytes( final Object value ) {
+        if ( value == null ) {
+            return new byte[0];
+        }
+        return encode( _type.cast( value ) );
+    }
+
+    @Override
+    public int sizeHint( final T value ) {
+        return value == null ? 0 : _width;
+    }
+
+    @Override
+    public void encode( final T value, final ByteBuffer target ) {
+        if ( value != null ) {
+            target.put( encode( value ) );
+        }
+    }
+
+    @Override
+    public T decode( final ByteBuffer source, final int offset, final int length ) {
+        if ( length == 0 ) {
+            return null;
+        }
+        if ( length == _width && !isStringEncoded( source, offset, length ) ) {
+            return decode( source, offset );
+        }
+        return fromBytes( BufferTypeMappings.toArray( source, offset, length ) );
+    }
+
+    public String toKeyString( final Object value ) {
+        return asString( _type.cast( value ) );
+    }
+
+    /**
+     * @return the textual form used by the string based mappings, also used for row keys
+     */
+    public abstract String asString( T value );
+
+    public abstract T fromString( String string );
+
+    protected abstract byte[] encode( T value );
+
+    protected abstract T decode( byte[] value );
+
+    /**
+     * Decodes a value of exactly the binary width starting at the absolute offset.
+     */
+    protected T decode( final ByteBuffer source, final int offset ) {
+        return decode( BufferTypeMappings.toArray( source, offset, _width ) );
+    }
+
+    /**
+     * Called for values that have exactly the binary width, to tell apart textual values
+     * that happen to have the same length.
+     * @return true if the value was written in the textual form rather than the binary one
+     */
+    protected boolean isStringEncoded( final byte[] value ) {
+        return false;
+    }
+
+    /**
+     * @see #isStringEncoded(byte[])
+     */
+    protected boolean isStringEncoded( final ByteBuffer source, final int offset, final int length ) {
+        return isStringEncoded( BufferTypeMappings.toArray( source, offset, length ) );
+    }
+
+    /**
+     * @return true if every byte is an ASCII digit, optionally preceded by a minus sign
+     */
+    protected static boolean isDecimalString( final byte[] value ) {
+        for ( int i = 0; i < value.length; i++ ) {
+            final byte b = value[i];
+            if ( ( b < '0' || b > '9' ) && !( i == 0 && b == '-' && value.length > 1 ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @see #isDecimalString(byte[])
+     */
+    protected static boolean isDecimalString( final ByteBuffer source, final int offset, final int length ) {
+        for ( int i = 0; i < length; i++ ) {
+            final byte b = source.get( offset + i );
+            if ( ( b < '0' || b > '9' ) && !( i == 0 && b == '-' && length > 1 ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    protected static long readLong( final byte[] value, final int offset ) {
+        long result = 0;
+        for ( int i = offset; i < offset + 8; i++ ) {
+            result = ( result << 8 ) | ( value[i] & 0xFF );
+        }
+        return result;
+    }
+
+    protected static void writeLong( final long value, final byte[] target, final int offset ) {
+        for ( int i = 7; i >= 0; i-- ) {
+            target[offset + 7 - i] = (byte) ( value >>> ( i * 8 ) );
+        }
+    }
+
+    protected static int readInt( final byte[] value, final int offset ) {
+        return ( value[offset] & 0xFF ) << 24 | ( value[offset + 1] & 0xFF ) << 16
+            | ( value[offset + 2] & 0xFF ) << 8 | ( value[offset + 3] & 0xFF );
+    }
+
+    protected static void writeInt( final int value, final byte[] target, final int offset ) {
+        target[offset] = (byte) ( value >>> 24 );
+        target[offset + 1] = (byte) ( value >>> 16 );
+        target[offset + 2] = (byte) ( value >>> 8 );
+        target[offset + 3] = (byte) value;
+    }
+
+    /**
+     * Reads big endian regardless of the byte order of the buffer.
+     */
+    protected static long readLong( final ByteBuffer source, final int offset ) {
+        long result = 0;
+        for ( int i = offset; i < offset + 8; i++ ) {
+            result = ( result << 8 ) | ( source.get( i ) & 0xFF );
+        }
+        return result;
+    }
+
+    /**
+     * Writes big endian regardless of the byte order of the buffer.
+     */
+    protected static void writeLong( final long value, final ByteBuffer target ) {
+        for ( int i = 7; i >= 0; i-- ) {
+            target.put( (byte) ( value >>> ( i * 8 ) ) );
+        }
+    }
+
+    protected static int readInt( final ByteBuffer source, final int offset ) {
+        return ( source.get( offset ) & 0xFF ) << 24 | ( source.get( offset + 1 ) & 0xFF ) << 16
+            | ( source.get( offset + 2 ) & 0xFF ) << 8 | ( source.get( offset + 3 ) & 0xFF );
+    }
+
+    protected static void writeInt( final int value, final ByteBuffer target ) {
+        target.put( (byte) ( value >>> 24 ) );
+        target.put( (byte) ( value >>> 16 ) );
+        target.put( (byte) ( value >>> 8 ) );
+        target.put( (byte) value );
+    }
+
+    private static boolean isJavaSerialized( final byte[] value ) {
+        return value.length > 2 && value[0] == JAVA_SERIALIZATION_MAGIC_HIGH && value[1] == JAVA_SERIALIZATION_MAGIC_LOW;
+    }
+
+    private static Object deserialize( final byte[] value ) {
+        try {
+            final ObjectInputStream oin = new ObjectInputStream( new ByteArrayInputStream( value ) );
+            try {
+                return oin.readObject();
+            } finally {
+                oin.close();
+            }
+        } catch ( final IOException e ) {
+            throw new IllegalArgumentException( "Could not read serialized legacy value", e );
+        } catch ( final ClassNotFoundException e ) {
+            throw new IllegalArgumentException( "Could not read serialized legacy value", e );
+        }
+    }
+
+}
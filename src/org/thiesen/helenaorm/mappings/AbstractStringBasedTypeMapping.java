@@ -25,11 +25,13 @@
  */
 package org.thiesen.helenaorm.mappings;
 
+import java.nio.ByteBuffer;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.thiesen.helenaorm.TypeMapping;
+import org.thiesen.helenaorm.BufferTypeMapping;
 
-public abstract class AbstractStringBasedTypeMapping<T> implements TypeMapping<T> {
+public abstract class AbstractStringBasedTypeMapping<T> implements BufferTypeMapping<T> {
     @SuppressWarnings( "unused" )
     private static final Log LOG = LogFactory.getLog( AbstractStringBasedTypeMapping.class );
 
@@ -53,6 +55,68 @@ public abstract class AbstractStringBasedTypeMapping<T> implements TypeMapping<T
         return STRING_MAPPING.toBytes( asString( (T)value ) );        
     }
 
+    @Override
+    public int sizeHint( final T value ) {
+        return value == null ? 0 : STRING_MAPPING.sizeHint( asString( value ) );
+    }
+
+    @Override
+    public void encode( final T value, final ByteBuffer target ) {
+        if ( value != null ) {
+            STRING_MAPPING.encode( asString( value ), target );
+        }
+    }
+
+    @Override
+    public T decode( final ByteBuffer source, final int offset, final int length ) {
+        if ( length == 0 ) {
+            return null;
+        }
+        return fromString( STRING_MAPPING.decode( source, offset, length ) );
+    }
+
+    /**
+     * @return the ASCII decimal form of the value, the same bytes as encoding {@link Long#toString(long)}
+     */
+    protected static byte[] toDecimalBytes( final long value ) {
+        final int start = value < 0 ? 1 : 0;
+        int length = start + 1;
+        for ( long rest = value / 10; rest != 0; rest /= 10 ) {
+            length++;
+        }
+        final byte[] result = new byte[length];
+        long rest = value;
+        for ( int i = length - 1; i >= start; i-- ) {
+            result[i] = (byte) ( '0' + Math.abs( rest % 10 ) );
+            rest /= 10;
+        }
+        if ( start == 1 ) {
+            result[0] = '-';
+        }
+        return result;
+    }
+
+    /**
+     * Parses an ASCII decimal value like {@link Long#parseLong(String)}, without creating a String.
+     */
+    protected static long parseDecimal( final byte[] value ) {
+        final boolean negative = value.length > 0 && value[0] == '-';
+        int i = negative ? 1 : 0;
+        if ( i == value.length ) {
+            throw new NumberFormatException( "Not a decimal number: " + STRING_MAPPING.fromBytes( value ) );
+        }
+        final long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long result = 0;
+        for ( ; i < value.length; i++ ) {
+            final int digit = value[i] - '0';
+            if ( digit < 0 || digit > 9 || result < limit / 10 || result * 10 < limit + digit ) {
+                throw new NumberFormatException( "Not a decimal number: " + STRING_MAPPING.fromBytes( value ) );
+            }
+            result = result * 10 - digit;
+        }
+        return negative ? result : -result;
+    }
+
     protected abstract T fromString( String string );
     protected abstract String asString( T value );
     
@@ -0,0 +1,92 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm.mappings;
+
+import java.nio.ByteBuffer;
+
+import org.thiesen.helenaorm.BooleanCodec;
+
+/**
+ * Stores booleans as a single byte, 1 for true and 0 for false.
+ */
+public class BinaryBooleanTypeMapping extends AbstractBinaryTypeMapping<Boolean> implements BooleanCodec {
+
+    private static final byte[] TRUE = new byte[] { 1 };
+    private static final byte[] FALSE = new byte[] { 0 };
+
+    public BinaryBooleanTypeMapping() {
+        super( Boolean.class, 1 );
+    }
+
+    @Override
+    protected byte[] encode( final Boolean value ) {
+        return value.booleanValue() ? TRUE.clone() : FALSE.clone();
+    }
+
+    @Override
+    protected Boolean decode( final byte[] value ) {
+        return Boolean.valueOf( value[0] != 0 );
+    }
+
+    @Override
+    public void encode( final Boolean value, final ByteBuffer target ) {
+        if ( value != null ) {
+            target.put( value.booleanValue() ? (byte) 1 : (byte) 0 );
+        }
+    }
+
+    @Override
+    protected Boolean decode( final ByteBuffer source, final int offset ) {
+        return Boolean.valueOf( source.get( offset ) != 0 );
+    }
+
+    @Override
+    public byte[] encodeBoolean( final boolean value ) {
+        return value ? TRUE.clone() : FALSE.clone();
+    }
+
+    /**
+     * Values in one of the older formats are read through {@link #fromBytes(byte[])}.
+     */
+    @Override
+    public boolean decodeBoolean( final byte[] value ) {
+        if ( value.length == 1 ) {
+            return value[0] != 0;
+        }
+        return fromBytes( value ).booleanValue();
+    }
+
+    @Override
+    public String asString( final Boolean value ) {
+        return value.toString();
+    }
+
+    @Override
+    public Boolean fromString( final String string ) {
+        return Boolean.valueOf( string );
+    }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm.mappings;
+
+import java.nio.ByteBuffer;
+import java.util.Date;
+
+/**
+ * Stores dates as 8 byte big endian milliseconds since the epoch.
+ */
+public class BinaryDateTypeMapping extends AbstractBinaryTypeMapping<Date> {
+
+    public BinaryDateTypeMapping() {
+        super( Date.class, 8 );
+    }
+
+    @Override
+    protected byte[] encode( final Date value ) {
+        final byte[] result = new byte[8];
+        writeLong( value.getTime(), result, 0 );
+        return result;
+    }
+
+    @Override
+    protected Date decode( final byte[] value ) {
+        return new Date( readLong( value, 0 ) );
+    }
+
+    @Override
+    public void encode( final Date value, final ByteBuffer target ) {
+        if ( value != null ) {
+            writeLong( value.getTime(), target );
+        }
+    }
+
+    @Override
+    protected Date decode( final ByteBuffer source, final int offset ) {
+        return new Date( readLong( source, offset ) );
+    }
+
+    @Override
+    public String asString( final Date value ) {
+        return String.valueOf( value.getTime() );
+    }
+
+    @Override
+    public Date fromString( final String string ) {
+        return new Date( Long.parseLong( string ) );
+    }
+
+}
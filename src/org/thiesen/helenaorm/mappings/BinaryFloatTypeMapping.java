@@ -0,0 +1,93 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm.mappings;
+
+import java.nio.ByteBuffer;
+
+import org.thiesen.helenaorm.FloatCodec;
+
+/**
+ * Stores floats as the 4 byte big endian form of their IEEE 754 bits.
+ */
+public class BinaryFloatTypeMapping extends AbstractBinaryTypeMapping<Float> implements FloatCodec {
+
+    public BinaryFloatTypeMapping() {
+        super( Float.class, 4 );
+    }
+
+    @Override
+    protected byte[] encode( final Float value ) {
+        final byte[] result = new byte[4];
+        writeInt( Float.floatToIntBits( value.floatValue() ), result, 0 );
+        return result;
+    }
+
+    @Override
+    protected Float decode( final byte[] value ) {
+        return Float.valueOf( Float.intBitsToFloat( readInt( value, 0 ) ) );
+    }
+
+    @Override
+    public void encode( final Float value, final ByteBuffer target ) {
+        if ( value != null ) {
+            writeInt( Float.floatToIntBits( value.floatValue() ), target );
+        }
+    }
+
+    @Override
+    protected Float decode( final ByteBuffer source, final int offset ) {
+        return Float.valueOf( Float.intBitsToFloat( readInt( source, offset ) ) );
+    }
+
+    @Override
+    public byte[] encodeFloat( final float value ) {
+        final byte[] result = new byte[4];
+        writeInt( Float.floatToIntBits( value ), result, 0 );
+        return result;
+    }
+
+    /**
+     * Values in one of the older formats are read through {@link #fromBytes(byte[])}.
+     */
+    @Override
+    public float decodeFloat( final byte[] value ) {
+        if ( value.length == 4 ) {
+            return Float.intBitsToFloat( readInt( value, 0 ) );
+        }
+        return fromBytes( value ).floatValue();
+    }
+
+    @Override
+    public String asString( final Float value ) {
+        return value.toString();
+    }
+
+    @Override
+    public Float fromString( final String string ) {
+        return Float.valueOf( string );
+    }
+
+}
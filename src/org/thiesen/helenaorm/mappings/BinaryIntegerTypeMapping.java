@@ -0,0 +1,120 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm.mappings;
+
+import java.nio.ByteBuffer;
+
+import org.thiesen.helenaorm.IntCodec;
+
+/**
+ * Stores integers as 4 byte big endian values.
+ *
+ * Values written by {@link IntegerTypeMapping} are read as well. A decimal string of exactly four digits
+ * cannot be told apart from a binary value whose bytes all happen to be ASCII digits, by default it
+ * is read as a decimal string. Mappings for data that never contained strings can be created with
+ * legacy decimals of that width disabled, which reads every 4 byte value exactly.
+ */
+public class BinaryIntegerTypeMapping extends AbstractBinaryTypeMapping<Integer> implements IntCodec {
+
+    private final boolean _readDecimalsOfWidth;
+
+    public BinaryIntegerTypeMapping() {
+        this( true );
+    }
+
+    /**
+     * @param readDecimalsOfWidth whether values of exactly four ASCII digits are read as decimal strings
+     * written by {@link IntegerTypeMapping}. This misreads binary values whose bytes all happen to be
+     * digits, only disable it for data that never contained such strings.
+     */
+    public BinaryIntegerTypeMapping( final boolean readDecimalsOfWidth ) {
+        super( Integer.class, 4 );
+        _readDecimalsOfWidth = readDecimalsOfWidth;
+    }
+
+    @Override
+    protected byte[] encode( final Integer value ) {
+        final byte[] result = new byte[4];
+        writeInt( value.intValue(), result, 0 );
+        return result;
+    }
+
+    @Override
+    protected Integer decode( final byte[] value ) {
+        return Integer.valueOf( readInt( value, 0 ) );
+    }
+
+    @Override
+    protected boolean isStringEncoded( final byte[] value ) {
+        return _readDecimalsOfWidth && isDecimalString( value );
+    }
+
+    @Override
+    public void encode( final Integer value, final ByteBuffer target ) {
+        if ( value != null ) {
+            writeInt( value.intValue(), target );
+        }
+    }
+
+    @Override
+    protected Integer decode( final ByteBuffer source, final int offset ) {
+        return Integer.valueOf( readInt( source, offset ) );
+    }
+
+    @Override
+    protected boolean isStringEncoded( final ByteBuffer source, final int offset, final int length ) {
+        return _readDecimalsOfWidth && isDecimalString( source, offset, length );
+    }
+
+    @Override
+    public byte[] encodeInt( final int value ) {
+        final byte[] result = new byte[4];
+        writeInt( value, result, 0 );
+        return result;
+    }
+
+    /**
+     * Values in one of the older formats are read through {@link #fromBytes(byte[])}.
+     */
+    @Override
+    public int decodeInt( final byte[] value ) {
+        if ( value.length == 4 && !isStringEncoded( value ) ) {
+            return readInt( value, 0 );
+        }
+        return fromBytes( value ).intValue();
+    }
+
+    @Override
+    public String asString( final Integer value ) {
+        return value.toString();
+    }
+
+    @Override
+    public Integer fromString( final String string ) {
+        return Integer.valueOf( string );
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm.mappings;
+
+import java.nio.ByteBuffer;
+
+import org.thiesen.helenaorm.LongCodec;
+
+/**
+ * Stores longs as 8 byte big endian values, compatible with Cassandra's LongType.
+ *
+ * Values written by {@link LongTypeMapping} are read as well. A decimal string of exactly eight digits
+ * cannot be told apart from a binary value whose bytes all happen to be ASCII digits, by default it
+ * is read as a decimal string. Mappings for data that never contained strings can be created with
+ * legacy decimals of that width disabled, which reads every 8 byte value exactly.
+ */
+public class BinaryLongTypeMapping extends AbstractBinaryTypeMapping<Long> implements LongCodec {
+
+    private final boolean _readDecimalsOfWidth;
+
+    public BinaryLongTypeMapping() {
+        this( true );
+    }
+
+    /**
+     * @param readDecimalsOfWidth whether values of exactly eight ASCII digits are read as decimal strings
+     * written by {@link LongTypeMapping}. This misreads binary values whose bytes all happen to be
+     * digits, only disable it for data that never contained such strings.
+     */
+    public BinaryLongTypeMapping( final boolean readDecimalsOfWidth ) {
+        super( Long.class, 8 );
+        _readDecimalsOfWidth = readDecimalsOfWidth;
+    }
+
+    @Override
+    protected byte[] encode( final Long value ) {
+        final byte[] result = new byte[8];
+        writeLong( value.longValue(), result, 0 );
+        return result;
+    }
+
+    @Override
+    protected Long decode( final byte[] value ) {
+        return Long.valueOf( readLong( value, 0 ) );
+    }
+
+    @Override
+    protected boolean isStringEncoded( final byte[] value ) {
+        return _readDecimalsOfWidth && isDecimalString( value );
+    }
+
+    @Override
+    public void encode( final Long value, final ByteBuffer target ) {
+        if ( value != null ) {
+            writeLong( value.longValue(), target );
+        }
+    }
+
+    @Override
+    protected Long decode( final ByteBuffer source, final int offset ) {
+        return Long.valueOf( readLong( source, offset ) );
+    }
+
+    @Override
+    protected boolean isStringEncoded( final ByteBuffer source, final int offset, final int length ) {
+        return _readDecimalsOfWidth && isDecimalString( source, offset, length );
+    }
+
+    @Override
+    public byte[] encodeLong( final long value ) {
+        final byte[] result = new byte[8];
+        writeLong( value, result, 0 );
+        return result;
+    }
+
+    /**
+     * Values in one of the older formats are read through {@link #fromBytes(byte[])}.
+     */
+    @Override
+    public long decodeLong( final byte[] value ) {
+        if ( value.length == 8 && !isStringEncoded( value ) ) {
+            return readLong( value, 0 );
+        }
+        return fromBytes( value ).longValue();
+    }
+
+    @Override
+    public String asString( final Long value ) {
+        return value.toString();
+    }
+
+    @Override
+    public Long fromString( final String string ) {
+        return Long.valueOf( string );
+    }
+
+}
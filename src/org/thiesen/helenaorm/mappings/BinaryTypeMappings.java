@@ -0,0 +1,79 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm.mappings;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+
+import org.thiesen.helenaorm.TypeMapping;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * The family of fixed width binary mappings, to be passed to
+ * {@link org.thiesen.helenaorm.HelenaORMDAOFactory#withConfig(String, int, org.thiesen.helenaorm.SerializeUnknownClasses, Map)}.
+ * They replace the default string based mappings for numbers and UUIDs and the Java serialization
+ * of doubles, floats, booleans and dates. The mappings of {@link #all()} still read values stored
+ * in those formats, those of {@link #exact()} read fixed width values only as binary.
+ */
+public final class BinaryTypeMappings {
+
+    private BinaryTypeMappings() {
+        // constants only
+    }
+
+    /**
+     * Mappings for column families that may still hold values written by the default mappings. Longs
+     * and ints of exactly eight or four ASCII digits are read as decimal strings, so binary values
+     * whose bytes all happen to be digits, such as 825307441, are misread.
+     */
+    public static Map<Class<?>, TypeMapping<?>> all() {
+        return create( true );
+    }
+
+    /**
+     * Like {@link #all()}, but every eight byte long and four byte int is read as binary. Only use
+     * these mappings for column families that never held values written by the string based mappings,
+     * otherwise decimal strings such as "2010" are misread.
+     */
+    public static Map<Class<?>, TypeMapping<?>> exact() {
+        return create( false );
+    }
+
+    private static Map<Class<?>, TypeMapping<?>> create( final boolean readDecimalsOfWidth ) {
+        return ImmutableMap.<Class<?>, TypeMapping<?>>builder()
+            .put( Long.class, new BinaryLongTypeMapping( readDecimalsOfWidth ) )
+            .put( Integer.class, new BinaryIntegerTypeMapping( readDecimalsOfWidth ) )
+            .put( UUID.class, new BinaryUUIDTypeMapping() )
+            .put( Double.class, new BinaryDoubleTypeMapping() )
+            .put( Float.class, new BinaryFloatTypeMapping() )
+            .put( Boolean.class, new BinaryBooleanTypeMapping() )
+            .put( Date.class, new BinaryDateTypeMapping() )
+            .build();
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Marcus Thiesen (marcus@thiesen.org)
+ *
+ * This file is part of HelenaORM.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.thiesen.helenaorm.mappings;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * Stores UUIDs as their 16 raw bytes, most significant bits first, which is the layout
+ * Cassandra's TimeUUIDType and LexicalUUIDType expect. Values written by
+ * {@link UUIDTypeMapping} are read as well.
+ */
+public class BinaryUUIDTypeMapping extends AbstractBinaryTypeMapping<UUID> {
+
+    public BinaryUUIDTypeMapping() {
+        super( UUID.class, 16 );
+    }
+
+    @Override
+    protected byte[] encode( final UUID value ) {
+        final byte[] result = new byte[16];
+        writeLong( value.getMostSignificantBits(), result, 0 );
+        writeLong( value.getLeastSignificantBits(), result, 8 );
+        return result;
+    }
+
+    @Override
+    protected UUID decode( final byte[] value ) {
+        return new UUID( readLong( value, 0 ), readLong( value, 8 ) );
+    }
+
+    @Override
+    public void encode( final UUID value, final ByteBuffer target ) {
+        if ( value != null ) {
+            writeLong( value.getMostSignificantBits(), target );
+            writeLong( value.getLeastSignificantBits(), target );
+        }
+    }
+
+    @Override
+    protected UUID decode( final ByteBuffer source, final int offset ) {
+        return new UUID( readLong( source, offset ), readLong( source, offset + 8 ) );
+    }
+
+    @Override
+    public String asString( final UUID value ) {
+        return value.toString();
+    }
+
+    @Override
+    public UUID fromString( final String string ) {
+        return UUID.fromString( string );
+    }
+
+}
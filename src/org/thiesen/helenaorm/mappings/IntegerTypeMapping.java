@@ -27,8 +27,9 @@ package org.thiesen.helenaorm.mappings;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.thiesen.helenaorm.IntCodec;
 
-public class IntegerTypeMapping extends AbstractStringBasedTypeMapping<Integer> {
+public class IntegerTypeMapping extends AbstractStringBasedTypeMapping<Integer> implements IntCodec {
     @SuppressWarnings( "unused" )
     private static final Log LOG = LogFactory.getLog( IntegerTypeMapping.class );
 
@@ -38,6 +39,20 @@ public class IntegerTypeMapping extends AbstractStringBasedTypeMapping<Integer>
 
     }
 
+    @Override
+    public byte[] encodeInt( final int value ) {
+        return toDecimalBytes( value );
+    }
+
+    @Override
+    public int decodeInt( final byte[] value ) {
+        final long result = parseDecimal( value );
+        if ( result < Integer.MIN_VALUE || result > Integer.MAX_VALUE ) {
+            throw new NumberFormatException( "Value out of int range: " + result );
+        }
+        return (int) result;
+    }
+
     @Override
     protected Integer fromString( final String string ) {
         return Integer.valueOf( string );
@@ -27,8 +27,9 @@ package org.thiesen.helenaorm.mappings;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.thiesen.helenaorm.LongCodec;
 
-public class LongTypeMapping extends AbstractStringBasedTypeMapping<Long> {
+public class LongTypeMapping extends AbstractStringBasedTypeMapping<Long> implements LongCodec {
     @SuppressWarnings( "unused" )
     private static final Log LOG = LogFactory.getLog( LongTypeMapping.class );
 
@@ -37,6 +38,16 @@ public class LongTypeMapping extends AbstractStringBasedTypeMapping<Long> {
         return value.toString();
     }
 
+    @Override
+    public byte[] encodeLong( final long value ) {
+        return toDecimalBytes( value );
+    }
+
+    @Override
+    public long decodeLong( final byte[] value ) {
+        return parseDecimal( value );
+    }
+
     @Override
     protected Long fromString( final String string ) {
         return Long.valueOf( string );
@@ -25,13 +25,15 @@
  */
 package org.thiesen.helenaorm.mappings;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.thiesen.helenaorm.TypeMapping;
+import org.thiesen.helenaorm.BufferTypeMapping;
+import org.thiesen.helenaorm.BufferTypeMappings;
 
-public class StringTypeMapping implements TypeMapping<String> {
+public class StringTypeMapping implements BufferTypeMapping<String> {
     @SuppressWarnings( "unused" )
     private static final Log LOG = LogFactory.getLog( StringTypeMapping.class );
 
@@ -53,4 +55,56 @@ public class StringTypeMapping implements TypeMapping<String> {
         return ((String)value).getBytes( DEFAULT_CHARSET );
     }
 
+    /**
+     * UTF-8 needs at most three bytes per char, a surrogate pair takes four bytes for two chars.
+     */
+    @Override
+    public int sizeHint( final String value ) {
+        return value == null ? 0 : value.length() * 3;
+    }
+
+    /**
+     * Writes UTF-8 without an intermediate array, unpaired surrogates are replaced by '?' like
+     * {@link String#getBytes(Charset)} does.
+     */
+    @Override
+    public void encode( final String value, final ByteBuffer target ) {
+        if ( value == null ) {
+            return;
+        }
+        final int length = value.length();
+        for ( int i = 0; i < length; i++ ) {
+            final char c = value.charAt( i );
+            if ( c < 0x80 ) {
+                target.put( (byte) c );
+            } else if ( c < 0x800 ) {
+                target.put( (byte) ( 0xC0 | c >> 6 ) );
+                target.put( (byte) ( 0x80 | c & 0x3F ) );
+            } else if ( Character.isHighSurrogate( c ) && i + 1 < length && Character.isLowSurrogate( value.charAt( i + 1 ) ) ) {
+                final int codePoint = Character.toCodePoint( c, value.charAt( ++i ) );
+                target.put( (byte) ( 0xF0 | codePoint >> 18 ) );
+                target.put( (byte) ( 0x80 | codePoint >> 12 & 0x3F ) );
+                target.put( (byte) ( 0x80 | codePoint >> 6 & 0x3F ) );
+                target.put( (byte) ( 0x80 | codePoint & 0x3F ) );
+            } else if ( Character.isHighSurrogate( c ) || Character.isLowSurrogate( c ) ) {
+                target.put( (byte) '?' );
+            } else {
+                target.put( (byte) ( 0xE0 | c >> 12 ) );
+                target.put( (byte) ( 0x80 | c >> 6 & 0x3F ) );
+                target.put( (byte) ( 0x80 | c & 0x3F ) );
+            }
+        }
+    }
+
+    @Override
+    public String decode( final ByteBuffer source, final int offset, final int length ) {
+        if ( length == 0 ) {
+            return null;
+        }
+        if ( source.hasArray() ) {
+            return new String( source.array(), source.arrayOffset() + offset, length, DEFAULT_CHARSET );
+        }
+        return new String( BufferTypeMappings.toArray( source, offset, length ), DEFAULT_CHARSET );
+    }
+
 }